@@ -0,0 +1,94 @@
+package webGrude;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps sources on a pool of threads, in order, with at most {@code parallelism} documents being
+ * read or mapped ahead of the consumer. The next sources are only taken when a mapped page is.
+ */
+final class BatchMapping<T> implements Iterator<T> {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Webgrude webgrude;
+    private final Iterator<Source> sources;
+    private final Class<T> pageClass;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private final Deque<Future<T>> inFlight = new ArrayDeque<>();
+
+    BatchMapping(final Webgrude webgrude, final Iterator<Source> sources, final Class<T> pageClass, final int parallelism) {
+        this.webgrude = webgrude;
+        this.sources = sources;
+        this.pageClass = pageClass;
+        this.parallelism = parallelism;
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "webgrude-map-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        // Idle threads end, so a stream that is dropped without being closed holds no thread
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        if (inFlight.isEmpty()) {
+            executor.shutdown();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Future<T> page = inFlight.poll();
+        fill();
+        try {
+            return page.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("Interrupted while mapping " + pageClass.getName(), e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof IOException) throw new UncheckedIOException((IOException) cause);
+            throw new RuntimeException(cause);
+        }
+    }
+
+    void close() {
+        for (final Future<T> page : inFlight) {
+            page.cancel(true);
+        }
+        inFlight.clear();
+        executor.shutdownNow();
+    }
+
+    private void fill() {
+        while (inFlight.size() < parallelism && sources.hasNext()) {
+            final Source source = sources.next();
+            inFlight.add(executor.submit(() -> source.mapWith(webgrude, pageClass)));
+        }
+    }
+}
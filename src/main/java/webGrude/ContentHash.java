@@ -0,0 +1,78 @@
+package webGrude;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fast 64 bit non cryptographic hash of page contents, based on MurmurHash3.
+ */
+final class ContentHash {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private ContentHash() {
+    }
+
+    /**
+     * @return the hash of the remaining bytes, the buffer position is left unchanged
+     */
+    static long of(final ByteBuffer contents) {
+        final ByteBuffer buffer = contents.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final long length = buffer.remaining();
+        long h = 0;
+        while (buffer.remaining() >= Long.BYTES) {
+            h = mix(h, buffer.getLong());
+        }
+        if (buffer.hasRemaining()) {
+            long tail = 0;
+            for (int shift = 0; buffer.hasRemaining(); shift += 8) {
+                tail |= (buffer.get() & 0xffL) << shift;
+            }
+            h ^= mixK(tail);
+        }
+        return finish(h, length);
+    }
+
+    /**
+     * @return the hash of the chars
+     */
+    static long of(final CharSequence contents) {
+        final int length = contents.length();
+        long h = 0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            h = mix(h, contents.charAt(i)
+                    | (long) contents.charAt(i + 1) << 16
+                    | (long) contents.charAt(i + 2) << 32
+                    | (long) contents.charAt(i + 3) << 48);
+        }
+        if (i < length) {
+            long tail = 0;
+            for (int shift = 0; i < length; i++, shift += 16) {
+                tail |= (long) contents.charAt(i) << shift;
+            }
+            h ^= mixK(tail);
+        }
+        return finish(h, length);
+    }
+
+    private static long mix(final long h, final long k) {
+        final long mixed = h ^ mixK(k);
+        return Long.rotateLeft(mixed, 27) * 5 + 0x52dce729;
+    }
+
+    private static long mixK(final long k) {
+        return Long.rotateLeft(k * C1, 31) * C2;
+    }
+
+    private static long finish(final long h, final long length) {
+        long f = h ^ length;
+        f ^= f >>> 33;
+        f *= 0xff51afd7ed558ccdL;
+        f ^= f >>> 33;
+        f *= 0xc4ceb9fe1a85ec53L;
+        f ^= f >>> 33;
+        return f;
+    }
+}
@@ -0,0 +1,115 @@
+package webGrude;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the requests made by an {@link OkHttpBrowser}, with the latency of recent requests.
+ */
+public final class FetchStats {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int nextLatency;
+    private int latencyCount;
+
+    FetchStats() {
+    }
+
+    /**
+     * @return how many requests were sent to the network, counting retries and hedges
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return how many requests failed with an IOException or a status that can be retried
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return how many requests were retried
+     */
+    public long retries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return how many hedge requests were sent because the first request was slow
+     */
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return how many hedge requests finished before the request they hedged
+     */
+    public long hedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Returns a percentile of the time until the response headers arrived, over the last 256
+     * network requests.
+     *
+     * @param percentile between 0 and 1, for example 0.95
+     * @return the latency, or null if fewer than 20 requests were made
+     */
+    public Duration latencyPercentile(final double percentile) {
+        final long[] sorted;
+        synchronized (latencies) {
+            if (latencyCount < MIN_LATENCY_SAMPLES) {
+                return null;
+            }
+            sorted = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    void recordRequest() {
+        requests.increment();
+    }
+
+    void recordLatency(final long nanos) {
+        synchronized (latencies) {
+            latencies[nextLatency] = nanos;
+            nextLatency = (nextLatency + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordHedge() {
+        hedges.increment();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "FetchStats{requests=" + requests() + ", failures=" + failures() + ", retries=" + retries()
+                + ", hedges=" + hedges() + ", hedgeWins=" + hedgeWins() + "}";
+    }
+}
@@ -0,0 +1,110 @@
+package webGrude;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the {@link Metrics} in memory, a {@link LatencyHistogram} for each stage, page class and
+ * host, with counters of bytes read and errors.
+ * <p>
+ * Histograms are created the first time a stage is recorded for a page class and host, after
+ * that recording doesn't lock or allocate. Pages fetched without a class are kept under
+ * {@code null}.
+ */
+public final class HistogramMetrics implements Metrics {
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Series>> series = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordTime(final Stage stage, final Class<?> pageClass, final String host, final long nanos) {
+        series(pageClass, host).histogram(stage).record(nanos);
+    }
+
+    @Override
+    public void recordBytes(final Class<?> pageClass, final String host, final long bytes) {
+        series(pageClass, host).bytes.add(bytes);
+    }
+
+    @Override
+    public void recordError(final Stage stage, final Class<?> pageClass, final String host) {
+        series(pageClass, host).errors[stage.ordinal()].increment();
+    }
+
+    /**
+     * @param stage     the step
+     * @param pageClass the mapped class, or null for pages fetched without a class
+     * @param host      the host of the page
+     * @return the durations of the step, or null if it was never recorded
+     */
+    public LatencyHistogram histogram(final Stage stage, final Class<?> pageClass, final String host) {
+        final Series found = find(pageClass, host);
+        return found == null ? null : found.histograms.get(stage.ordinal());
+    }
+
+    /**
+     * @param pageClass the mapped class
+     * @param host      the host of the page
+     * @return how many bytes of response bodies were read
+     */
+    public long bytes(final Class<?> pageClass, final String host) {
+        final Series found = find(pageClass, host);
+        return found == null ? 0 : found.bytes.sum();
+    }
+
+    /**
+     * @param stage     the step
+     * @param pageClass the mapped class, or null for pages fetched without a class
+     * @param host      the host of the page
+     * @return how many times the step failed
+     */
+    public long errors(final Stage stage, final Class<?> pageClass, final String host) {
+        final Series found = find(pageClass, host);
+        return found == null ? 0 : found.errors[stage.ordinal()].sum();
+    }
+
+    private Series find(final Class<?> pageClass, final String host) {
+        final ConcurrentMap<String, Series> byHost = series.get(classKey(pageClass));
+        return byHost == null ? null : byHost.get(host == null ? "" : host);
+    }
+
+    private Series series(final Class<?> pageClass, final String host) {
+        final Class<?> classKey = classKey(pageClass);
+        ConcurrentMap<String, Series> byHost = series.get(classKey);
+        if (byHost == null) {
+            byHost = series.computeIfAbsent(classKey, c -> new ConcurrentHashMap<>());
+        }
+        final String hostKey = host == null ? "" : host;
+        final Series found = byHost.get(hostKey);
+        return found != null ? found : byHost.computeIfAbsent(hostKey, h -> new Series());
+    }
+
+    private static Class<?> classKey(final Class<?> pageClass) {
+        // ConcurrentHashMap has no null keys
+        return pageClass == null ? Void.class : pageClass;
+    }
+
+    private static final class Series {
+        private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(STAGES.length);
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder[] errors = new LongAdder[STAGES.length];
+
+        Series() {
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = new LongAdder();
+            }
+        }
+
+        LatencyHistogram histogram(final Stage stage) {
+            final LatencyHistogram found = histograms.get(stage.ordinal());
+            if (found != null) {
+                return found;
+            }
+            histograms.compareAndSet(stage.ordinal(), null, new LatencyHistogram());
+            return histograms.get(stage.ordinal());
+        }
+    }
+}
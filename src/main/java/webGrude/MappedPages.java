@@ -0,0 +1,71 @@
+package webGrude;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The last page mapped from each url and class, kept with the ETag or Last-Modified of the
+ * response it was mapped from. The least recently used page is evicted when full.
+ */
+class MappedPages {
+
+    private final Map<Key, CachedPage> pages;
+
+    MappedPages(final int maxEntries) {
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedPage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the page mapped from a response with the same validator, or null
+     */
+    synchronized <T> T get(final String url, final Class<T> pageClass, final String validator) {
+        final CachedPage entry = pages.get(new Key(url, pageClass));
+        if (entry == null || !entry.validator.equals(validator)) {
+            return null;
+        }
+        return pageClass.cast(entry.page);
+    }
+
+    synchronized void put(final String url, final Class<?> pageClass, final String validator, final Object page) {
+        pages.put(new Key(url, pageClass), new CachedPage(validator, page));
+    }
+
+    private static final class Key {
+        private final String url;
+        private final Class<?> pageClass;
+
+        private Key(final String url, final Class<?> pageClass) {
+            this.url = url;
+            this.pageClass = pageClass;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return url.equals(key.url) && pageClass.equals(key.pageClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, pageClass);
+        }
+    }
+
+    private static final class CachedPage {
+        private final String validator;
+        private final Object page;
+
+        private CachedPage(final String validator, final Object page) {
+            this.validator = validator;
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package webGrude;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last page mapped by a {@link Webgrude} for each base url and page class, kept with a hash
+ * of the page contents.
+ * <p>
+ * When the same contents are mapped again for the same url and class, the instance mapped the
+ * first time is returned, skipping the parsing and mapping. Mapping changed contents replaces
+ * the page kept for the url and class. The same instance is shared by every
+ * caller, so it should not be changed. Classes with {@link java.util.stream.Stream} fields,
+ * directly or in nested classes, are always mapped again, since a stream can only be read once. The least recently used pages are evicted when the cache
+ * is full, and pages older than the time to live are mapped again.
+ * <pre>
+ * {@code Webgrude webgrude = Webgrude.builder().mappingCache(new MappingCache(1000, Duration.ofHours(1))).build();}
+ * </pre>
+ */
+public final class MappingCache {
+
+    private final Map<Key, CachedPage> pages;
+    private final long timeToLiveNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache where pages don't expire.
+     *
+     * @param maxEntries the maximum number of mapped pages kept
+     */
+    public MappingCache(final int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Creates a cache where pages expire.
+     *
+     * @param maxEntries the maximum number of mapped pages kept
+     * @param timeToLive how long a mapped page is kept, or null to keep it until it is evicted
+     */
+    public MappingCache(final int maxEntries, final Duration timeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, was " + maxEntries);
+        }
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("timeToLive must be positive, was " + timeToLive);
+        }
+        this.timeToLiveNanos = timeToLive == null ? Long.MAX_VALUE : timeToLive.toNanos();
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedPage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return how many times a mapped page was reused
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many times a page had to be mapped
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of mapped pages kept
+     */
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    /**
+     * Removes every mapped page.
+     */
+    public synchronized void clear() {
+        pages.clear();
+    }
+
+    synchronized <T> T get(final String url, final Class<T> pageClass, final long contentHash) {
+        final Key key = new Key(url, pageClass);
+        final CachedPage entry = pages.get(key);
+        if (entry == null || entry.contentHash != contentHash) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (System.nanoTime() - entry.createdNanos >= timeToLiveNanos) {
+            pages.remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return pageClass.cast(entry.page);
+    }
+
+    synchronized void put(final String url, final Class<?> pageClass, final long contentHash, final Object page) {
+        pages.put(new Key(url, pageClass), new CachedPage(contentHash, page, System.nanoTime()));
+    }
+
+    private static final class Key {
+        private final String url;
+        private final Class<?> pageClass;
+
+        private Key(final String url, final Class<?> pageClass) {
+            this.url = url == null ? "" : url;
+            this.pageClass = pageClass;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return url.equals(key.url) && pageClass.equals(key.pageClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, pageClass);
+        }
+    }
+
+    private static final class CachedPage {
+        private final long contentHash;
+        private final Object page;
+        private final long createdNanos;
+
+        private CachedPage(final long contentHash, final Object page, final long createdNanos) {
+            this.contentHash = contentHash;
+            this.page = page;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package webGrude;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a response body and the time spent waiting for them.
+ */
+final class MeteredInputStream extends FilterInputStream {
+
+    private long bytes;
+    private long nanos;
+
+    MeteredInputStream(final InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final long start = System.nanoTime();
+        final int b = super.read();
+        nanos += System.nanoTime() - start;
+        if (b >= 0) bytes++;
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final long start = System.nanoTime();
+        final int read = super.read(b, off, len);
+        nanos += System.nanoTime() - start;
+        if (read > 0) bytes += read;
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long start = System.nanoTime();
+        final long skipped = super.skip(n);
+        nanos += System.nanoTime() - start;
+        bytes += skipped;
+        return skipped;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    long nanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,84 @@
+package webGrude;
+
+/**
+ * Receives the timings, sizes and errors of fetching and mapping pages, tagged by page class and
+ * host, to be exported to a metrics library.
+ * <p>
+ * Without metrics Webgrude doesn't read the clock for them. {@link HistogramMetrics} keeps them
+ * in memory, other implementations can forward them to a metrics library like Micrometer.
+ * Methods are called from every thread fetching or mapping pages, and must be thread safe.
+ *
+ * @see Webgrude.Builder#metrics(Metrics)
+ */
+public interface Metrics {
+
+    /**
+     * The metrics that ignore everything, the default.
+     */
+    Metrics NONE = new Metrics() {
+    };
+
+    /**
+     * The timed steps of getting a page.
+     */
+    enum Stage {
+        /**
+         * Sending the request until the response headers arrived, with retries and hedges.
+         */
+        FETCH,
+        /**
+         * Waiting for the response body to be read from the network.
+         */
+        READ,
+        /**
+         * Parsing the page. Pages are parsed while they are read, so it includes reading them.
+         */
+        PARSE,
+        /**
+         * Evaluating the selector of a field, tagged with the class holding the field, which is
+         * the nested class for fields of nested classes and list items.
+         */
+        SELECT,
+        /**
+         * Converting the selected nodes of a value or link field, or of a list of them, tagged
+         * like {@link #SELECT}.
+         */
+        CONVERT,
+        /**
+         * Populating the page class from the parsed page, including its selections and conversions.
+         */
+        MAP
+    }
+
+    /**
+     * Records how long a step took. The steps of each field are only recorded for classes mapped
+     * by reflection, classes with a generated mapper only record their whole mapping.
+     *
+     * @param stage     the step
+     * @param pageClass the mapped class, or null for pages fetched without a class
+     * @param host      the host of the page, empty if unknown
+     * @param nanos     the duration in nanoseconds
+     */
+    default void recordTime(final Stage stage, final Class<?> pageClass, final String host, final long nanos) {
+    }
+
+    /**
+     * Records the size of a response body read from the network.
+     *
+     * @param pageClass the mapped class
+     * @param host      the host of the page
+     * @param bytes     the number of bytes read
+     */
+    default void recordBytes(final Class<?> pageClass, final String host, final long bytes) {
+    }
+
+    /**
+     * Records a step that failed.
+     *
+     * @param stage     the step
+     * @param pageClass the mapped class, or null for pages fetched without a class
+     * @param host      the host of the page, empty if unknown
+     */
+    default void recordError(final Stage stage, final Class<?> pageClass, final String host) {
+    }
+}
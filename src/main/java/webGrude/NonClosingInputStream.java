@@ -0,0 +1,19 @@
+package webGrude;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Leaves the wrapped stream open when it is closed, for parsers that close their input when
+ * they are done with it.
+ */
+final class NonClosingInputStream extends FilterInputStream {
+
+    NonClosingInputStream(final InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public void close() {
+    }
+}
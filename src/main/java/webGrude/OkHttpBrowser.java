@@ -1,14 +1,41 @@
 package webGrude;
 
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import webGrude.http.GetException;
+import webGrude.mapping.MappingPlan;
 import webGrude.mapping.TooManyResultsException;
 import webGrude.mapping.annotations.Page;
 import webGrude.http.LinkVisitor;
+import webGrude.http.RateLimitedLinkVisitor;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Instantiate a class with Selector annotations from a html String.
@@ -37,6 +64,18 @@ import java.io.IOException;
  * <pre>
  * {@code ExamplePage example = new OkHttpBrowser().execute(request, ExamplePage.class);}
  * </pre>
+ * Every method has an asynchronous version, that doesn't block the calling thread while the
+ * page is fetched.
+ * <pre>
+ * {@code CompletableFuture<ExamplePage> example = new OkHttpBrowser().getAsync(ExamplePage.class);}
+ * </pre>
+ * Other options are set with a builder, for example a response cache or the connection limits.
+ * <pre>
+ * {@code OkHttpBrowser browser = OkHttpBrowser.builder()
+ *     .cache(new File("cache"), 50L * 1024 * 1024)
+ *     .maxRequestsPerHost(10)
+ *     .build();}
+ * </pre>
  *
  * @author beothorn
  * @see webGrude.mapping.annotations.Page
@@ -44,14 +83,51 @@ import java.io.IOException;
  */
 public class OkHttpBrowser implements LinkVisitor {
 
-    private OkHttpClient client;
-    private final Webgrude webgrude = new Webgrude();
+    private final OkHttpClient client;
+    private final Webgrude webgrude;
+    private final Executor mappingExecutor;
+    private final MappedPages mappedPages;
+    private final FetchStats stats = new FetchStats();
+    private final Metrics metrics;
+    private final Duration hedgeAfter;
+    private final double hedgeAfterPercentile;
 
     /**
      * Creates a new instance of OkHttpBrowser using the default Webgrude and OkHttpClient.
+     * Pages fetched asynchronously are mapped on the common fork join pool.
      */
     public OkHttpBrowser() {
-        // Default constructor
+        this(new Builder());
+    }
+
+    /**
+     * Creates a new instance of OkHttpBrowser using the default Webgrude and OkHttpClient.
+     *
+     * @param mappingExecutor the executor pages fetched asynchronously are mapped on
+     */
+    public OkHttpBrowser(final Executor mappingExecutor) {
+        this(new Builder().mappingExecutor(mappingExecutor));
+    }
+
+    private OkHttpBrowser(final Builder builder) {
+        this.webgrude = builder.webgrude;
+        this.metrics = webgrude.metrics();
+        this.mappingExecutor = builder.mappingExecutor;
+        this.client = builder.buildClient(stats);
+        this.hedgeAfter = builder.hedgeAfter;
+        this.hedgeAfterPercentile = builder.hedgeAfterPercentile;
+        this.mappedPages = builder.cacheDirectory == null || builder.maxMappedPages == 0
+                ? null
+                : new MappedPages(builder.maxMappedPages);
+    }
+
+    /**
+     * Creates a builder for an OkHttpBrowser with non default options.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
@@ -83,8 +159,19 @@ public class OkHttpBrowser implements LinkVisitor {
      * @throws TooManyResultsException    When a field maps to a type but the css selector returns more than one element
      */
     public <T> T get(final String url, final Class<T> pageClass) {
-        final String pageContent = getPage(url);
-        return webgrude.map(pageContent, pageClass);
+        final Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        try (Response response = fetch(request, pageClass)) {
+            final ResponseBody body = response.body();
+            if (response.isSuccessful() && body != null) {
+                return map(response, body, pageClass);
+            }
+        } catch (IOException e) {
+            throw new GetException(e, url);
+        }
+        throw new GetException("Could not get page " + url);
     }
     /***
      * Loads content from request onto an instance of pageClass.
@@ -98,27 +185,346 @@ public class OkHttpBrowser implements LinkVisitor {
      * @throws IOException    If something goes wrong fetching the page.
      */
     public <T> T execute(Request request, final Class<T> pageClass) throws IOException {
-        try (Response response = client().newCall(request).execute()) {
+        try (Response response = fetch(request, pageClass)) {
             if (!response.isSuccessful()) {
                 throw new IOException("Unsuccessful response " + response.code());
             }
-            if (response.body() == null) {
+            final ResponseBody body = response.body();
+            if (body == null) {
                 throw new IOException("Empty body");
             }
-            return webgrude.map(response.body().string(), pageClass);
+            return map(response, body, pageClass);
         }
     }
 
+    /**
+     * Asynchronous version of {@link #get(Class, String...)}.
+     *
+     * @param <T>       An instance of the class with {@literal @}Selector annotation
+     * @param pageClass A class with a {@literal @}Selector annotation
+     * @param params    Optional, if the pageClass has a url with parameters
+     * @return A future completed with the mapped page, or with a {@link GetException} when the
+     * page can't be fetched. Cancelling it cancels the request.
+     */
+    public <T> CompletableFuture<T> getAsync(final Class<T> pageClass, final String... params) {
+        cryIfNotAnnotated(pageClass);
+        final String url = webgrude.url(pageClass, params);
+        return getAsync(url, pageClass);
+    }
+
+    /**
+     * Asynchronous version of {@link #get(String, Class)}.
+     *
+     * @param <T>       An instance of the class with a {@literal @}Page annotation
+     * @param url       The url to load.
+     * @param pageClass A class with a {@literal @}Selector annotation
+     * @return A future completed with the mapped page, or with a {@link GetException} when the
+     * page can't be fetched. Cancelling it cancels the request.
+     */
+    public <T> CompletableFuture<T> getAsync(final String url, final Class<T> pageClass) {
+        final Request request = new Request.Builder()
+                .url(url)
+                .build();
+        return enqueue(request, pageClass, e -> new GetException(e, url));
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(Request, Class)}.
+     * <p>
+     * The request is enqueued on the OkHttpClient dispatcher and the response is mapped on the
+     * mapping executor, so no thread waits for the server.
+     *
+     * @param <T>       An instance of the class with a {@literal @}Selector annotation
+     * @param request   A {@link okhttp3.Request} that will be executed.
+     * @param pageClass A class with a {@literal @}Selector annotation
+     * @return A future completed with the mapped page, or with an {@link IOException} when the
+     * page can't be fetched. Cancelling it cancels the request.
+     */
+    public <T> CompletableFuture<T> executeAsync(final Request request, final Class<T> pageClass) {
+        return enqueue(request, pageClass, e -> e);
+    }
+
+    /**
+     * @param failure converts a failure fetching the page to the exception the future completes with
+     */
+    private <T> CompletableFuture<T> enqueue(
+            final Request request,
+            final Class<T> pageClass,
+            final Function<IOException, Exception> failure
+    ) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Call call = client().newCall(request);
+        future.whenComplete((page, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        final long start = metrics != Metrics.NONE ? System.nanoTime() : 0;
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(final Call call, final IOException e) {
+                recordFetch(request, pageClass, start, null);
+                future.completeExceptionally(failure.apply(e));
+            }
+
+            @Override
+            public void onResponse(final Call call, final Response response) {
+                recordFetch(request, pageClass, start, response);
+                final ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    response.close();
+                    future.completeExceptionally(failure.apply(new IOException("Unsuccessful response " + response.code())));
+                    return;
+                }
+                try {
+                    mappingExecutor.execute(() -> {
+                        try (response) {
+                            future.complete(map(response, body, pageClass));
+                        } catch (final IOException e) {
+                            future.completeExceptionally(failure.apply(e));
+                        } catch (final RuntimeException | Error e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    response.close();
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private Response fetch(final Request request, final Class<?> pageClass) throws IOException {
+        if (metrics == Metrics.NONE) {
+            return fetch(request);
+        }
+        final long start = System.nanoTime();
+        final Response response;
+        try {
+            response = fetch(request);
+        } catch (final IOException | RuntimeException e) {
+            recordFetch(request, pageClass, start, null);
+            throw e;
+        }
+        recordFetch(request, pageClass, start, response);
+        return response;
+    }
+
+    /**
+     * Records the time until the response headers arrived, and an error if there is no response
+     * or it is not successful.
+     */
+    private void recordFetch(final Request request, final Class<?> pageClass, final long start, final Response response) {
+        if (metrics == Metrics.NONE) {
+            return;
+        }
+        final String host = request.url().host();
+        if (response == null || !response.isSuccessful()) {
+            metrics.recordError(Metrics.Stage.FETCH, pageClass, host);
+        }
+        if (response != null) {
+            metrics.recordTime(Metrics.Stage.FETCH, pageClass, host, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Executes a request, sending a second identical request if an idempotent request takes
+     * longer than the hedging delay. The first successful response wins and the other call is
+     * cancelled. An error response doesn't win over a slower success, it is only returned if the
+     * other call fails too.
+     */
+    private Response fetch(final Request request) throws IOException {
+        final Duration hedgeDelay = hedgeDelay(request);
+        if (hedgeDelay == null) {
+            return client.newCall(request).execute();
+        }
+        final CompletableFuture<Response> first = enqueue(request);
+        try {
+            return first.get(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            stats.recordHedge();
+        } catch (final ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (final InterruptedException e) {
+            first.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + request.url());
+        }
+
+        final CompletableFuture<Response> hedge = enqueue(request);
+        final CompletableFuture<Response> winner = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicReference<Response> failedResponse = new AtomicReference<>();
+        for (final CompletableFuture<Response> call : List.of(first, hedge)) {
+            call.whenComplete((response, e) -> {
+                if (e == null && response.isSuccessful()) {
+                    if (!winner.complete(response)) {
+                        response.close();
+                    }
+                    return;
+                }
+                if (response != null) {
+                    // Kept in case the other call fails too, an error response says more than an exception
+                    final Response previous = failedResponse.getAndSet(response);
+                    if (previous != null) {
+                        previous.close();
+                    }
+                }
+                if (failures.incrementAndGet() == 2) {
+                    final Response kept = failedResponse.getAndSet(null);
+                    if (kept == null) {
+                        winner.completeExceptionally(e);
+                    } else if (!winner.complete(kept)) {
+                        kept.close();
+                    }
+                } else if (winner.isDone()) {
+                    closeFailedResponse(failedResponse);
+                }
+            });
+        }
+        try {
+            final Response response = winner.get();
+            if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+                stats.recordHedgeWin();
+            }
+            return response;
+        } catch (final ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + request.url());
+        } finally {
+            winner.cancel(true);
+            first.cancel(true);
+            hedge.cancel(true);
+            closeFailedResponse(failedResponse);
+        }
+    }
+
+    private static void closeFailedResponse(final AtomicReference<Response> failedResponse) {
+        final Response response = failedResponse.getAndSet(null);
+        if (response != null) {
+            response.close();
+        }
+    }
+
+    private Duration hedgeDelay(final Request request) {
+        if (!request.method().equals("GET") && !request.method().equals("HEAD")) {
+            return null;
+        }
+        if (hedgeAfter != null) {
+            return hedgeAfter;
+        }
+        return hedgeAfterPercentile > 0 ? stats.latencyPercentile(hedgeAfterPercentile) : null;
+    }
+
+    private CompletableFuture<Response> enqueue(final Request request) {
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        final Call call = client.newCall(request);
+        future.whenComplete((response, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(final Call call, final IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(final Call call, final Response response) {
+                if (!future.complete(response)) {
+                    response.close();
+                }
+            }
+        });
+        return future;
+    }
+
+    private static IOException asIOException(final Throwable e) {
+        if (e instanceof IOException) return (IOException) e;
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new IOException(e);
+    }
+
+    /**
+     * Maps the body while it is read, decoded with the Content-Type charset or, without one,
+     * the charset detected by the parser. Links are resolved against the url of the request that
+     * got the response, which follows redirects, not against the {@literal @}Page template.
+     * <p>
+     * When the body comes from the response cache, unchanged or revalidated by a 304, the page
+     * mapped from it the last time is returned instead, unless the page has stream fields.
+     */
+    private <T> T map(final Response response, final ResponseBody body, final Class<T> pageClass) throws IOException {
+        final String url = response.request().url().toString();
+        final String validator = mappedPages == null || !MappingPlan.of(pageClass).isReusable()
+                ? null
+                : validator(response);
+        if (validator != null && isFromCache(response)) {
+            final T mappedPage = mappedPages.get(url, pageClass, validator);
+            if (mappedPage != null) {
+                return mappedPage;
+            }
+        }
+        final MediaType contentType = body.contentType();
+        final Charset charset = contentType == null ? null : contentType.charset();
+        final T page;
+        if (metrics == Metrics.NONE) {
+            page = webgrude.map(body.byteStream(), charset, pageClass, url);
+        } else {
+            final MeteredInputStream in = new MeteredInputStream(body.byteStream());
+            try {
+                page = webgrude.map(in, charset, pageClass, url);
+            } finally {
+                final String host = response.request().url().host();
+                metrics.recordTime(Metrics.Stage.READ, pageClass, host, in.nanos());
+                metrics.recordBytes(pageClass, host, in.bytes());
+            }
+        }
+        if (validator != null) {
+            mappedPages.put(url, pageClass, validator, page);
+        }
+        return page;
+    }
+
+    private static boolean isFromCache(final Response response) {
+        final Response networkResponse = response.networkResponse();
+        return response.cacheResponse() != null
+                && (networkResponse == null || networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED);
+    }
+
+    private static String validator(final Response response) {
+        final String etag = response.header("ETag");
+        if (etag != null) {
+            return etag;
+        }
+        final String lastModified = response.header("Last-Modified");
+        return lastModified == null ? null : "Last-Modified: " + lastModified;
+    }
+
     private static <T> void cryIfNotAnnotated(final Class<T> pageClass) {
         if (!pageClass.isAnnotationPresent(Page.class)) {
             throw new RuntimeException("To be mapped from a page, the class must be annotated  @" + Page.class.getSimpleName());
         }
     }
 
-    private OkHttpClient client(){
-        if (client == null) {
-            client = new OkHttpClient();
-        }
+    /**
+     * @return the counters of the requests made by this browser
+     */
+    public FetchStats stats() {
+        return stats;
+    }
+
+    /**
+     * Returns the client pages are fetched with. It can be given to
+     * {@link Builder#client(OkHttpClient)} so other browsers share its connections and threads.
+     *
+     * @return the OkHttpClient
+     */
+    public OkHttpClient client() {
         return client;
     }
 
@@ -132,7 +538,7 @@ public class OkHttpBrowser implements LinkVisitor {
                 .url(url)
                 .build();
 
-        try (Response response = client().newCall(request).execute()) {
+        try (Response response = fetch(request, null)) {
             if (response.isSuccessful() && response.body() != null) {
                 return response.body().string();
             }
@@ -142,8 +548,264 @@ public class OkHttpBrowser implements LinkVisitor {
         throw new GetException("Could not get page " + url);
     }
 
+    /**
+     * Returns a visitor that fetches pages with this browser, visiting each host at most
+     * requestsPerSecond times a second, or less often if its robots.txt has a longer Crawl-delay.
+     * Different hosts are visited without waiting for each other.
+     *
+     * @param requestsPerSecond the maximum rate of visits to the same host
+     * @return the rate limited visitor, to be shared by every visit that must be paced together
+     * @see RateLimitedLinkVisitor
+     */
+    public LinkVisitor rateLimited(final double requestsPerSecond) {
+        return new RateLimitedLinkVisitor(this, requestsPerSecond, 1, true);
+    }
+
     @Override
     public String visitLink(String href) {
         return getPage(href);
     }
+
+    /**
+     * Builds an OkHttpBrowser.
+     */
+    public static final class Builder {
+
+        private Webgrude webgrude = new Webgrude();
+        private Executor mappingExecutor = ForkJoinPool.commonPool();
+        private File cacheDirectory;
+        private long cacheMaxSize;
+        private int maxMappedPages;
+        private OkHttpClient client;
+        private ConnectionPool connectionPool;
+        private List<Protocol> protocols;
+        private int maxRequests;
+        private int maxRequestsPerHost;
+        private Duration connectTimeout;
+        private Duration readTimeout;
+        private Duration callTimeout;
+        private RetryPolicy retryPolicy = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+        private Duration hedgeAfter;
+        private double hedgeAfterPercentile;
+
+        private Builder() {
+        }
+
+        /**
+         * @param webgrude the Webgrude pages are mapped with, for example one with a
+         *                 {@link MappingCache}, a default one if not set
+         * @return this builder
+         */
+        public Builder webgrude(final Webgrude webgrude) {
+            this.webgrude = Objects.requireNonNull(webgrude, "webgrude");
+            return this;
+        }
+
+        /**
+         * @param mappingExecutor the executor pages fetched asynchronously are mapped on,
+         *                        the common fork join pool by default
+         * @return this builder
+         */
+        public Builder mappingExecutor(final Executor mappingExecutor) {
+            this.mappingExecutor = Objects.requireNonNull(mappingExecutor, "mappingExecutor");
+            return this;
+        }
+
+        /**
+         * Enables a disk cache of http responses, revalidated with ETag and Last-Modified
+         * conditional requests. The last 100 pages mapped from cached responses are kept in
+         * memory and returned again, without parsing, while the server answers they are not modified.
+         *
+         * @param directory    the cache directory, it must not be shared with another cache
+         * @param maxSizeBytes the maximum size of the cache, the least recently used responses are evicted
+         * @return this builder
+         */
+        public Builder cache(final File directory, final long maxSizeBytes) {
+            return cache(directory, maxSizeBytes, 100);
+        }
+
+        /**
+         * Enables a disk cache of http responses, like {@link #cache(File, long)}, keeping up to
+         * maxMappedPages mapped pages in memory.
+         * <p>
+         * A page that is not modified is returned as the same instance every time, so it should
+         * not be changed by its users.
+         *
+         * @param directory      the cache directory, it must not be shared with another cache
+         * @param maxSizeBytes   the maximum size of the cache, the least recently used responses are evicted
+         * @param maxMappedPages the maximum number of mapped pages kept in memory, 0 to always map the cached response
+         * @return this builder
+         */
+        public Builder cache(final File directory, final long maxSizeBytes, final int maxMappedPages) {
+            if (maxMappedPages < 0) {
+                throw new IllegalArgumentException("maxMappedPages must not be negative, was " + maxMappedPages);
+            }
+            this.cacheDirectory = Objects.requireNonNull(directory, "directory");
+            this.cacheMaxSize = maxSizeBytes;
+            this.maxMappedPages = maxMappedPages;
+            return this;
+        }
+
+        /**
+         * Fetches pages with an existing client, sharing its connection pool, dispatcher threads
+         * and cache. The other options of this builder apply only to this browser.
+         *
+         * @param client the client to share, a new one by default
+         * @return this builder
+         * @see OkHttpBrowser#client()
+         */
+        public Builder client(final OkHttpClient client) {
+            this.client = Objects.requireNonNull(client, "client");
+            return this;
+        }
+
+        /**
+         * Keeps connections open to be reused by later requests, saving the TCP and TLS handshakes.
+         *
+         * @param maxIdleConnections the maximum number of idle connections kept, 5 by default
+         * @param keepAlive          how long an idle connection is kept, 5 minutes by default
+         * @return this builder
+         */
+        public Builder connectionPool(final int maxIdleConnections, final Duration keepAlive) {
+            this.connectionPool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+            return this;
+        }
+
+        /**
+         * Sets the protocols offered to servers, in order of preference. By default HTTP/2 is
+         * preferred and HTTP/1.1 used with servers that don't support it. Use
+         * {@code protocols(Protocol.HTTP_1_1)} to avoid HTTP/2, or
+         * {@code protocols(Protocol.H2_PRIOR_KNOWLEDGE)} for cleartext HTTP/2 servers.
+         *
+         * @param protocols the protocols
+         * @return this builder
+         */
+        public Builder protocols(final Protocol... protocols) {
+            this.protocols = List.of(protocols);
+            return this;
+        }
+
+        /**
+         * @param maxRequests the maximum number of requests running at the same time, 64 by default
+         * @return this builder
+         */
+        public Builder maxRequests(final int maxRequests) {
+            if (maxRequests < 1) {
+                throw new IllegalArgumentException("maxRequests must be at least 1, was " + maxRequests);
+            }
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerHost the maximum number of requests running at the same time to
+         *                           the same host, 5 by default
+         * @return this builder
+         */
+        public Builder maxRequestsPerHost(final int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequestsPerHost must be at least 1, was " + maxRequestsPerHost);
+            }
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * @param connectTimeout the connection timeout, 10 seconds by default
+         * @return this builder
+         */
+        public Builder connectTimeout(final Duration connectTimeout) {
+            this.connectTimeout = Objects.requireNonNull(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * @param readTimeout the maximum time waiting for data from the server, 10 seconds by default
+         * @return this builder
+         */
+        public Builder readTimeout(final Duration readTimeout) {
+            this.readTimeout = Objects.requireNonNull(readTimeout, "readTimeout");
+            return this;
+        }
+
+        /**
+         * @param callTimeout the maximum time of a whole call, including reading the body, no limit by default
+         * @return this builder
+         */
+        public Builder callTimeout(final Duration callTimeout) {
+            this.callTimeout = Objects.requireNonNull(callTimeout, "callTimeout");
+            return this;
+        }
+
+        /**
+         * Retries idempotent requests that fail with an IOException or a temporary error status,
+         * waiting between attempts as described by the policy. Nothing is retried by default.
+         *
+         * @param retryPolicy the retry policy
+         * @return this builder
+         */
+        public Builder retry(final RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy");
+            return this;
+        }
+
+        /**
+         * Sends a second request when a page fetched with get or getPage takes longer than
+         * hedgeAfter, using the response that arrives first. Trades some extra requests for a
+         * shorter tail latency.
+         *
+         * @param hedgeAfter how long to wait before sending the second request
+         * @return this builder
+         */
+        public Builder hedgeAfter(final Duration hedgeAfter) {
+            this.hedgeAfter = Objects.requireNonNull(hedgeAfter, "hedgeAfter");
+            return this;
+        }
+
+        /**
+         * Like {@link #hedgeAfter(Duration)}, waiting for a percentile of the latency of the
+         * recent requests, for example 0.95. There is no hedging until 20 requests were made.
+         *
+         * @param percentile the latency percentile, between 0 and 1
+         * @return this builder
+         * @see FetchStats#latencyPercentile(double)
+         */
+        public Builder hedgeAfterPercentile(final double percentile) {
+            if (!(percentile > 0 && percentile <= 1)) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1, was " + percentile);
+            }
+            this.hedgeAfterPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * @return a new OkHttpBrowser with this builder options
+         */
+        public OkHttpBrowser build() {
+            return new OkHttpBrowser(this);
+        }
+
+        private OkHttpClient buildClient(final FetchStats stats) {
+            final OkHttpClient.Builder clientBuilder = client == null
+                    ? new OkHttpClient.Builder()
+                    : client.newBuilder();
+            clientBuilder.interceptors().removeIf(interceptor -> interceptor instanceof RetryInterceptor);
+            clientBuilder.addInterceptor(new RetryInterceptor(retryPolicy, stats));
+            if (cacheDirectory != null) clientBuilder.cache(new Cache(cacheDirectory, cacheMaxSize));
+            if (connectionPool != null) clientBuilder.connectionPool(connectionPool);
+            if (protocols != null) clientBuilder.protocols(protocols);
+            if (connectTimeout != null) clientBuilder.connectTimeout(connectTimeout);
+            if (readTimeout != null) clientBuilder.readTimeout(readTimeout);
+            if (callTimeout != null) clientBuilder.callTimeout(callTimeout);
+            if (maxRequests > 0 || maxRequestsPerHost > 0) {
+                final Dispatcher dispatcher = client == null
+                        ? new Dispatcher()
+                        : new Dispatcher(client.dispatcher().executorService());
+                if (maxRequests > 0) dispatcher.setMaxRequests(maxRequests);
+                if (maxRequestsPerHost > 0) dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+                clientBuilder.dispatcher(dispatcher);
+            }
+            return clientBuilder.build();
+        }
+    }
 }
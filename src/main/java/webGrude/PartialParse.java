@@ -0,0 +1,96 @@
+package webGrude;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import webGrude.mapping.FieldPlan;
+import webGrude.mapping.MappingPlan;
+import webGrude.mapping.annotations.Page;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses HTML for classes annotated with {@code @Page(partial = true)} only until every single
+ * value field has found its node.
+ */
+final class PartialParse {
+
+    // The evaluators of the fields are shared: their memos are per thread and document, and
+    // selecting with them resets the memos
+    private static final ClassValue<List<Evaluator>> STOP_QUERIES = new ClassValue<>() {
+        @Override
+        protected List<Evaluator> computeValue(final Class<?> type) {
+            final Page page = type.getAnnotation(Page.class);
+            if (page == null || !page.partial()) {
+                return Collections.emptyList();
+            }
+            final List<Evaluator> queries = new ArrayList<>();
+            for (final FieldPlan field : MappingPlan.of(type).fields()) {
+                if (field.mapping().useXpath()) {
+                    // XPath can't be evaluated on single elements while parsing
+                    return Collections.emptyList();
+                }
+                if (!field.isList()) {
+                    queries.add(field.mapping().evaluator());
+                }
+            }
+            return Collections.unmodifiableList(queries);
+        }
+    };
+
+    private PartialParse() {
+    }
+
+    /**
+     * @return the selectors of the single value fields of a partially parsed class, or an empty
+     * list if the class must be fully parsed
+     */
+    static List<Evaluator> stopQueries(final Class<?> pageClass) {
+        return STOP_QUERIES.get(pageClass);
+    }
+
+    /**
+     * Parses until the first node matching each query is complete or the input ends. Nodes that
+     * were not completely read are left out of the document. The reader is closed.
+     */
+    static Document parse(final Reader input, final List<Evaluator> stopQueries) throws IOException {
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(input, "")) {
+            final Document doc = parser.document();
+            final List<Evaluator> pending = new ArrayList<>(stopQueries);
+            // Elements are emitted once complete, children before their parents
+            final Set<Element> completeMatches = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Iterator<Element> elements = parser.iterator();
+            Element element = null;
+            while (!pending.isEmpty() && elements.hasNext()) {
+                element = elements.next();
+                final Element emitted = element;
+                pending.removeIf(query -> {
+                    if (!query.matches(doc, emitted)) return false;
+                    completeMatches.add(emitted);
+                    // A still open ancestor may be the first match, it is checked again once it closes.
+                    // Selecting also resets the evaluator, matches memoized on open elements may be stale
+                    return completeMatches.contains(doc.selectFirst(query));
+                });
+            }
+            if (pending.isEmpty()) {
+                // The siblings after the last complete element were only partly read
+                while (element.nextSibling() != null) {
+                    element.nextSibling().remove();
+                }
+            }
+            return doc;
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package webGrude;
+
+import webGrude.mapping.FieldPlan;
+import webGrude.mapping.LazyList;
+import webGrude.mapping.MappingListener;
+import webGrude.mapping.elements.FieldMapping;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the mapping of each field, the output of {@link Webgrude.Builder#debug(boolean)}.
+ */
+final class PrintingListener implements MappingListener {
+
+    private final PrintStream out;
+
+    PrintingListener(final PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void fieldStarted(final FieldPlan field) {
+        out.println("\nField '" + field.name() + "' of type '" + field.fieldType().getSimpleName() + "'");
+    }
+
+    @Override
+    public void fieldSelected(final FieldPlan field, final int count) {
+        final FieldMapping mapping = field.mapping();
+        out.println("\tFound " + count + " nodes, selector isXpath: '" + mapping.useXpath()
+                + "' selector: '" + mapping.value() + "'");
+    }
+
+    @Override
+    public void fieldConverted(final FieldPlan field, final Object value) {
+        if (value instanceof LazyList) {
+            // Printing the items would map them
+            out.println("\t\tSet ('" + field.name() + "' = " + ((LazyList<?>) value).size() + " nodes, mapped on access)");
+            return;
+        }
+        out.println("\t\tSet ('" + field.name() + "' = '" + value + "')");
+    }
+
+    @Override
+    public void fieldEnded(final FieldPlan field, final long nanos) {
+        out.println("\tMapped '" + field.name() + "' in " + nanos / 1000 + " us");
+    }
+}
@@ -0,0 +1,126 @@
+package webGrude;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries idempotent requests following a {@link RetryPolicy}, and records every attempt in
+ * the {@link FetchStats}.
+ */
+class RetryInterceptor implements Interceptor {
+
+    private final RetryPolicy policy;
+    private final FetchStats stats;
+
+    RetryInterceptor(final RetryPolicy policy, final FetchStats stats) {
+        this.policy = policy;
+        this.stats = stats;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final boolean idempotent = isIdempotent(request.method());
+        for (int retry = 0; ; retry++) {
+            final long start = System.nanoTime();
+            final Response response;
+            try {
+                stats.recordRequest();
+                response = chain.proceed(request);
+            } catch (final IOException e) {
+                stats.recordFailure();
+                if (!idempotent || retry >= policy.maxRetries() || chain.call().isCanceled()) {
+                    throw e;
+                }
+                sleep(policy.backoffNanos(retry));
+                if (chain.call().isCanceled()) {
+                    throw e;
+                }
+                stats.recordRetry();
+                continue;
+            }
+            if (response.networkResponse() != null) {
+                stats.recordLatency(System.nanoTime() - start);
+            }
+            if (!isRetryable(response.code())) {
+                return response;
+            }
+            stats.recordFailure();
+            if (!idempotent || retry >= policy.maxRetries()) {
+                return response;
+            }
+            long delay = policy.backoffNanos(retry);
+            final Long retryAfter = retryAfterNanos(response.header("Retry-After"));
+            if (retryAfter != null) {
+                if (retryAfter > policy.maxBackoff().toNanos()) {
+                    return response;
+                }
+                delay = Math.max(delay, retryAfter);
+            }
+            if (chain.call().isCanceled()) {
+                return response;
+            }
+            response.close();
+            sleep(delay);
+            // A hedged call that lost is cancelled while it waits
+            if (chain.call().isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            stats.recordRetry();
+        }
+    }
+
+    private static boolean isIdempotent(final String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRetryable(final int code) {
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * @return the delay asked by a Retry-After header, in seconds or as a date, or null
+     */
+    static Long retryAfterNanos(final String retryAfter) {
+        if (retryAfter == null) {
+            return null;
+        }
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (final NumberFormatException e) {
+            try {
+                final ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+            } catch (final DateTimeParseException | ArithmeticException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static void sleep(final long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
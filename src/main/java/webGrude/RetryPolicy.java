@@ -0,0 +1,62 @@
+package webGrude;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How {@link OkHttpBrowser} retries idempotent requests that fail.
+ * <p>
+ * Requests failing with an IOException or answered with 408, 429, 500, 502, 503 or 504 are
+ * retried after an exponential backoff with full jitter: a random delay between zero and
+ * {@code initialBackoff * 2^retry}, capped at maxBackoff. A Retry-After header sets the minimum
+ * delay. If it asks for a delay longer than maxBackoff, the response is returned as it is.
+ */
+public final class RetryPolicy {
+
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    /**
+     * @param maxRetries     how many times a request is retried, 0 to never retry
+     * @param initialBackoff the maximum delay before the first retry
+     * @param maxBackoff     the maximum delay before any retry
+     */
+    public RetryPolicy(final int maxRetries, final Duration initialBackoff, final Duration maxBackoff) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative, was " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoff = Objects.requireNonNull(initialBackoff, "initialBackoff");
+        this.maxBackoff = Objects.requireNonNull(maxBackoff, "maxBackoff");
+    }
+
+    /**
+     * @return how many times a request is retried
+     */
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return the maximum delay before the first retry
+     */
+    public Duration initialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @return the maximum delay before any retry
+     */
+    public Duration maxBackoff() {
+        return maxBackoff;
+    }
+
+    long backoffNanos(final int retry) {
+        final long initial = initialBackoff.toNanos();
+        final long max = maxBackoff.toNanos();
+        final long cap = retry >= Long.SIZE - 1 || initial > (max >> retry) ? max : initial << retry;
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
@@ -0,0 +1,87 @@
+package webGrude;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A document to be mapped by {@link Webgrude#mapAll(Stream, Class, int)}: a file, bytes or a
+ * string, with the URL its links are resolved against.
+ * <p>
+ * Files are only read when their turn to be mapped comes.
+ */
+public final class Source {
+
+    private final Path path;
+    private final byte[] bytes;
+    private final String contents;
+    private final Charset charset;
+    private final String baseUrl;
+
+    private Source(final Path path, final byte[] bytes, final String contents, final Charset charset, final String baseUrl) {
+        this.path = path;
+        this.bytes = bytes;
+        this.contents = contents;
+        this.charset = charset;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @param path    the file with the document
+     * @param charset the file charset, or null to detect it
+     * @param baseUrl the URL links are resolved against, or null to use the {@literal @}Page URL
+     * @return a source read from a file
+     */
+    public static Source of(final Path path, final Charset charset, final String baseUrl) {
+        return new Source(path, null, null, charset, baseUrl);
+    }
+
+    /**
+     * @param bytes   the document bytes, they are not copied
+     * @param charset the document charset, or null to detect it
+     * @param baseUrl the URL links are resolved against, or null to use the {@literal @}Page URL
+     * @return a source read from bytes
+     */
+    public static Source of(final byte[] bytes, final Charset charset, final String baseUrl) {
+        return new Source(null, bytes, null, charset, baseUrl);
+    }
+
+    /**
+     * @param contents the document
+     * @param baseUrl  the URL links are resolved against, or null to use the {@literal @}Page URL
+     * @return a source read from a string
+     */
+    public static Source of(final String contents, final String baseUrl) {
+        return new Source(null, null, contents, null, baseUrl);
+    }
+
+    /**
+     * @return the URL links are resolved against, null if the {@literal @}Page URL is used
+     */
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    <T> T mapWith(final Webgrude webgrude, final Class<T> pageClass) throws IOException {
+        final String url = baseUrl == null ? webgrude.url(pageClass) : baseUrl;
+        if (contents != null) {
+            return webgrude.map(contents, pageClass, url);
+        }
+        if (bytes != null) {
+            return webgrude.map(ByteBuffer.wrap(bytes), charset, pageClass, url);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return webgrude.map(in, charset, pageClass, url);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (path != null) return path.toString();
+        return (bytes != null ? bytes.length + " bytes" : contents.length() + " chars") + " from " + baseUrl;
+    }
+}
@@ -1,50 +1,78 @@
 package webGrude;
 
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.parser.Parser;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import webGrude.mapping.BaseUrl;
+import webGrude.mapping.FieldPlan;
+import webGrude.mapping.LazyList;
+import webGrude.mapping.MapperSupport;
+import webGrude.mapping.MappingListener;
+import webGrude.mapping.MappingPlan;
+import webGrude.mapping.PageMapper;
 import webGrude.mapping.TooManyResultsException;
+import webGrude.mapping.ValueType;
 import webGrude.mapping.annotations.*;
 import webGrude.mapping.elements.FieldMapping;
 import webGrude.mapping.elements.Link;
 import webGrude.mapping.elements.WrongTypeForField;
 
-import java.lang.reflect.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.text.DateFormat;
 import java.text.MessageFormat;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Core class responsible for mapping HTML or XML content to Java objects annotated with Webgrude annotations.
  * <p>
  * Use this to parse a page's contents and populate annotated fields with selected data.
+ * Classes with a mapper generated by the webGrude-processor annotation processor are mapped
+ * by it, the rest by reflection.
  */
 public class Webgrude {
 
 
     /**
-     * Synthetic root tag used when parsing XML and HTML fragments so it always have a root.
+     * Synthetic root tag XML documents and nested classes used to be mapped from.
+     *
+     * @deprecated documents are no longer wrapped, selectors are evaluated from the document or
+     * from the selected element
      */
+    @Deprecated
     public static final String ROOT_FAKE = "rootFake";
 
-    private final boolean debug;
+    private final MappingListener listener;
+    private final boolean tracing;
+    private final Metrics metrics;
+    private final boolean metered;
+    private final boolean keepLinkElements;
+    private final MappingCache mappingCache;
+    private final ForkJoinPool parallelListPool;
+    private final int parallelListThreshold;
+    private final boolean singlePassSelection;
 
 
     /**
      * Creates a new Webgrude instance.
      */
     public Webgrude() {
-        debug = false;
+        this(new Builder());
     }
 
     /**
@@ -53,7 +81,63 @@ public class Webgrude {
      * @param debug whether to enable debug logging
      */
     public Webgrude(boolean debug) {
-        this.debug = debug;
+        this(new Builder().debug(debug));
+    }
+
+    private Webgrude(final Builder builder) {
+        this.listener = builder.listener != null
+                ? builder.listener
+                : builder.debug ? new PrintingListener(System.out) : MappingListener.NONE;
+        this.tracing = listener != MappingListener.NONE;
+        this.metrics = builder.metrics == null ? Metrics.NONE : builder.metrics;
+        this.metered = metrics != Metrics.NONE;
+        this.keepLinkElements = builder.keepLinkElements;
+        this.mappingCache = builder.mappingCache;
+        this.parallelListPool = builder.parallelListPool;
+        this.parallelListThreshold = builder.parallelListThreshold;
+        this.singlePassSelection = builder.singlePassSelection;
+    }
+
+    /**
+     * Creates a builder for a Webgrude instance with non default options.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return true if mapped {@link Link}s keep the element they were mapped from
+     * @see Builder#keepLinkElements(boolean)
+     */
+    public boolean keepsLinkElements() {
+        return keepLinkElements;
+    }
+
+    /**
+     * @return the metrics pages are recorded to, {@link Metrics#NONE} if none were set
+     * @see Builder#metrics(Metrics)
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the pool large lists are mapped on, or null if lists are mapped on the caller thread
+     * @see Builder#parallelLists(ForkJoinPool, int)
+     */
+    public ForkJoinPool parallelListPool() {
+        return parallelListPool;
+    }
+
+    /**
+     * @return the number of nodes from which a list is mapped in parallel, and the largest
+     * number of nodes mapped by a single task
+     * @see Builder#parallelLists(ForkJoinPool, int)
+     */
+    public int parallelListThreshold() {
+        return parallelListThreshold;
     }
 
     /**
@@ -86,30 +170,308 @@ public class Webgrude {
         final Class<T> pageClass,
         final String baseUrl
     ) {
-        final boolean isXML = pageClass.getAnnotation(XML.class) != null;
+        final long contentHash = mappingCache == null ? 0 : ContentHash.of(pageContents);
+        try {
+            return map((isXml, stopQueries) -> parse(pageContents, isXml, stopQueries), contentHash, pageClass, baseUrl);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        T pageObjectInstance;
+    /**
+     * Maps an HTML or XML stream to a class with {@literal @}Selector annotations.
+     * <p>
+     * The stream is decoded while it is parsed, without reading it into a String first. When
+     * the charset is null it is detected from the byte order mark, a meta charset tag or the
+     * XML declaration, falling back to UTF-8. The stream is not closed.
+     * <p>
+     * With a {@link MappingCache} the stream is read fully before being parsed, so its contents
+     * can be hashed.
+     *
+     * @param pageContents the content to be parsed
+     * @param charset      the content charset, or null to detect it
+     * @param pageClass    the class with annotated fields to populate
+     * @param baseUrl      base URL used to resolve relative links
+     * @param <T>          the type of the page class
+     * @return an instance of the page class populated with data from the content
+     * @throws IOException if the stream can't be read
+     */
+    public <T> T map(
+        final InputStream pageContents,
+        final Charset charset,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) throws IOException {
+        if (mappingCache != null) {
+            return map(ByteBuffer.wrap(pageContents.readAllBytes()), charset, pageClass, baseUrl);
+        }
+        final InputStream unclosed = new NonClosingInputStream(pageContents);
+        return mapSource((isXml, stopQueries) -> parse(unclosed, charset, isXml, stopQueries), pageClass, baseUrl);
+    }
+
+    /**
+     * Maps the remaining bytes of a buffer to a class with {@literal @}Selector annotations.
+     * <p>
+     * The bytes are decoded while they are parsed, the buffer position is left unchanged. When
+     * the charset is null it is detected like in {@link #map(InputStream, Charset, Class, String)}.
+     *
+     * @param pageContents the content to be parsed
+     * @param charset      the content charset, or null to detect it
+     * @param pageClass    the class with annotated fields to populate
+     * @param baseUrl      base URL used to resolve relative links
+     * @param <T>          the type of the page class
+     * @return an instance of the page class populated with data from the content
+     */
+    public <T> T map(
+        final ByteBuffer pageContents,
+        final Charset charset,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) {
+        final long contentHash = mappingCache == null
+                ? 0
+                : ContentHash.of(pageContents) * 31 + (charset == null ? 0 : charset.name().hashCode());
+        try {
+            return map((isXml, stopQueries) -> parse(new ByteBufferInputStream(pageContents), charset, isXml, stopQueries),
+                    contentHash, pageClass, baseUrl);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps an already parsed document, or an element of it, to a class with {@literal @}Selector
+     * or {@literal @}XPath annotations.
+     * <p>
+     * Selectors are evaluated in place and only match descendants of the scope, never the scope
+     * itself. Nothing in the document is moved or copied, so the same document can be mapped to
+     * several classes. The first XPath field keeps a W3C copy of the document for the
+     * XPath fields mapped after it, don't modify the document after mapping XPath fields from it.
+     * The {@link MappingCache} is not used.
+     *
+     * @param scope     the parsed document or element to map
+     * @param pageClass the class with annotated fields to populate
+     * @param baseUrl   base URL used to resolve relative links
+     * @param <T>       the type of the page class
+     * @return an instance of the page class populated with data from the scope
+     */
+    public <T> T map(
+        final Element scope,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) {
+        final PageMapper<T> generatedMapper = tracing ? null : PageMapper.forType(pageClass);
+        final boolean isXml = generatedMapper != null ? generatedMapper.isXml() : MappingPlan.of(pageClass).isXml();
+        return mapScope(scope, isXml, generatedMapper, pageClass, baseUrl);
+    }
+
+    /**
+     * Maps many documents to the same class concurrently.
+     * <p>
+     * Pages are returned in the order of the sources as the returned stream is consumed. At most
+     * {@code parallelism} sources are taken ahead of the consumer and read and mapped on as many
+     * threads, so a slow consumer holds the rest of the sources back and memory stays bounded.
+     * A source that fails to map throws its exception when its page is consumed, an
+     * {@link java.io.UncheckedIOException} if it could not be read.
+     * <p>
+     * Closing the returned stream cancels the documents in flight and closes the sources stream.
+     *
+     * @param sources     the documents to map
+     * @param pageClass   the class with annotated fields to populate
+     * @param parallelism the maximum number of documents read and mapped at the same time
+     * @param <T>         the type of the page class
+     * @return the mapped pages, in the order of the sources
+     */
+    public <T> Stream<T> mapAll(
+        final Stream<Source> sources,
+        final Class<T> pageClass,
+        final int parallelism
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        final BatchMapping<T> pages = new BatchMapping<>(this, sources.iterator(), pageClass, parallelism);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close)
+                .onClose(sources::close);
+    }
+
+    /**
+     * Streams the items of an XML document too large to be parsed at once, like a product feed.
+     * <p>
+     * The document is read with StAX as the stream is consumed, building and mapping one element
+     * at the path at a time, so memory is bounded by the size of a single item. The path is a
+     * simple absolute path of element names, like the {@literal @}XPath of a list field, for
+     * example {@code /feed/product}. Items of annotated classes are mapped like nested classes,
+     * their {@literal @}XPath selectors are relative to the item, for example {@code /title}.
+     * Items can also be Strings, Integers, Floats, Booleans, Dates or Elements.
+     * <p>
+     * Close the returned stream to stop reading early, the input stream is not closed.
+     *
+     * @param xml       the XML content
+     * @param charset   the content charset, or null to detect it
+     * @param path      the absolute path of the items
+     * @param itemClass the class items are mapped to
+     * @param <T>       the item type
+     * @return the mapped items, in document order
+     * @throws java.io.UncheckedIOException if the document can't be read while the stream is consumed
+     */
+    public <T> Stream<T> streamXml(
+        final InputStream xml,
+        final Charset charset,
+        final String path,
+        final Class<T> itemClass
+    ) {
+        final BaseUrl baseUrl = BaseUrl.of(url(itemClass));
+        final ValueType valueType = ValueType.of(itemClass);
+        if (valueType != null) {
+            final FieldMapping mapping = new FieldMapping(path, null, null, null, null, true);
+            return XmlItems.stream(xml, charset, path)
+                    .map(item -> itemClass.cast(instanceForNode(item, mapping, valueType, itemClass, baseUrl)));
+        }
+        final PageMapper<T> generatedMapper = tracing ? null : PageMapper.forType(itemClass);
+        final MappingPlan<T> plan = MappingPlan.of(itemClass);
+        return XmlItems.stream(xml, charset, path).map(item -> {
+            if (generatedMapper != null) {
+                return generatedMapper.map(item, baseUrl, this);
+            }
+            try {
+                return internalLoadContents(baseUrl, item, plan);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private <T> T map(
+        final DocumentSource source,
+        final long contentHash,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) throws IOException {
+        if (mappingCache == null || !MappingPlan.of(pageClass).isReusable()) {
+            return mapSource(source, pageClass, baseUrl);
+        }
+        final T cachedPage = mappingCache.get(baseUrl, pageClass, contentHash);
+        if (cachedPage != null) {
+            return cachedPage;
+        }
+        final T page = mapSource(source, pageClass, baseUrl);
+        mappingCache.put(baseUrl, pageClass, contentHash, page);
+        return page;
+    }
+
+    private <T> T mapSource(
+        final DocumentSource source,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) throws IOException {
+        final List<Evaluator> stopQueries = PartialParse.stopQueries(pageClass);
+        final PageMapper<T> generatedMapper = tracing ? null : PageMapper.forType(pageClass);
+        final boolean isXml = generatedMapper != null ? generatedMapper.isXml() : MappingPlan.of(pageClass).isXml();
+        if (!metered) {
+            return mapScope(source.parse(isXml, stopQueries), isXml, generatedMapper, pageClass, baseUrl);
+        }
+        final long start = System.nanoTime();
         final Document doc;
-        if (isXML) {
-            doc = Jsoup.parse("<"+ROOT_FAKE+">" + pageContents + "</"+ROOT_FAKE+">", Parser.xmlParser());
-        } else {
-            doc = Jsoup.parse(pageContents);
+        try {
+            doc = source.parse(isXml, stopQueries);
+        } catch (final IOException | RuntimeException e) {
+            metrics.recordError(Metrics.Stage.PARSE, pageClass, BaseUrl.of(baseUrl).host());
+            throw e;
         }
+        metrics.recordTime(Metrics.Stage.PARSE, pageClass, BaseUrl.of(baseUrl).host(), System.nanoTime() - start);
+        return mapScope(doc, isXml, generatedMapper, pageClass, baseUrl);
+    }
+
+    private <T> T mapScope(
+        final Element scope,
+        final boolean isXml,
+        final PageMapper<T> generatedMapper,
+        final Class<T> pageClass,
+        final String baseUrl
+    ) {
+        final BaseUrl pageBaseUrl = scope instanceof Document && !isXml
+                ? BaseUrl.of((Document) scope, baseUrl)
+                : BaseUrl.of(baseUrl);
+        if (!metered) {
+            return populate(scope, pageBaseUrl, generatedMapper, pageClass);
+        }
+        final long start = System.nanoTime();
         try {
-            pageObjectInstance = internalLoadContents(baseUrl, doc, pageClass);
+            final T page = populate(scope, pageBaseUrl, generatedMapper, pageClass);
+            metrics.recordTime(Metrics.Stage.MAP, pageClass, pageBaseUrl.host(), System.nanoTime() - start);
+            return page;
+        } catch (final RuntimeException e) {
+            metrics.recordError(Metrics.Stage.MAP, pageClass, pageBaseUrl.host());
+            throw e;
+        }
+    }
+
+    private <T> T populate(
+        final Element scope,
+        final BaseUrl pageBaseUrl,
+        final PageMapper<T> generatedMapper,
+        final Class<T> pageClass
+    ) {
+        if (generatedMapper != null) {
+            final T pageObjectInstance = generatedMapper.map(scope, pageBaseUrl, this);
+            generatedMapper.afterPageLoad(pageObjectInstance);
+            return pageObjectInstance;
+        }
+
+        final MappingPlan<T> plan = MappingPlan.of(pageClass);
+
+        T pageObjectInstance;
+        try {
+            pageObjectInstance = internalLoadContents(pageBaseUrl, scope, plan);
         } catch (TooManyResultsException | WrongTypeForField e) {
             throw e;
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
 
-        Arrays.stream(pageClass.getDeclaredMethods())
-                .filter(m -> m.getAnnotation(AfterPageLoad.class) != null)
-                .forEach(m -> invokeOrThrow(m, pageObjectInstance));
+        for (final Method method : plan.afterPageLoadMethods()) {
+            invokeOrThrow(method, pageObjectInstance);
+        }
 
         return pageObjectInstance;
     }
 
+    private interface DocumentSource {
+        /**
+         * @param stopQueries the selectors HTML parsing may stop after, if not empty
+         */
+        Document parse(boolean isXML, List<Evaluator> stopQueries) throws IOException;
+    }
+
+    private static Document parse(final String pageContents, final boolean isXML, final List<Evaluator> stopQueries)
+            throws IOException {
+        if (isXML) {
+            return Jsoup.parse(pageContents, "", Parser.xmlParser());
+        }
+        if (!stopQueries.isEmpty()) {
+            return PartialParse.parse(new StringReader(pageContents), stopQueries);
+        }
+        return Jsoup.parse(pageContents);
+    }
+
+    private static Document parse(
+        final InputStream pageContents,
+        final Charset charset,
+        final boolean isXML,
+        final List<Evaluator> stopQueries
+    ) throws IOException {
+        final String charsetName = charset == null ? null : charset.name();
+        if (!isXML && charset != null && !stopQueries.isEmpty()) {
+            return PartialParse.parse(new InputStreamReader(pageContents, charset), stopQueries);
+        }
+        if (!isXML) {
+            return Jsoup.parse(pageContents, charsetName, "");
+        }
+        return Jsoup.parse(pageContents, charsetName, "", Parser.xmlParser());
+    }
+
     /***
      * Gets the url from a class with a {@literal @}Page annotation
      * @param pageClass A class with a {@literal @}Page annotation and an url value
@@ -125,67 +487,87 @@ public class Webgrude {
     }
 
     private <T> T internalLoadContents(
-        final String baseUrl,
+        final BaseUrl baseUrl,
         final Element node,
-        final Class<T> clazz
+        final MappingPlan<T> plan
     ) throws InstantiationException, IllegalAccessException, InvocationTargetException {
-        final T newInstance = getNewInstance(clazz);
-
-        final Field[] declaredFields = clazz.getDeclaredFields();
-        for (final Field field : declaredFields) {
-            if (!FieldMapping.hasMappingAnnotation(field)) continue;
-
-            final Class<?> fieldType = field.getType();
+        final T newInstance = plan.newInstance();
 
-            logDebug("\nField '"+field.getName()+"' of type '"+ fieldType.getSimpleName() + "'");
-
-            if (fieldType.equals(java.util.List.class)) {
-                populateListField(baseUrl, node, newInstance, field);
-            } else {
-                populateField(baseUrl, node, newInstance, field);
+        final long selectStart = metered ? System.nanoTime() : 0;
+        final Elements[] preselected = singlePassSelection ? plan.selectInOnePass(node) : null;
+        if (metered && preselected != null) {
+            metrics.recordTime(Metrics.Stage.SELECT, plan.type(), baseUrl.host(), System.nanoTime() - selectStart);
+        }
+        final List<FieldPlan> fields = plan.fields();
+        for (int i = 0; i < fields.size(); i++) {
+            final FieldPlan fieldPlan = fields.get(i);
+            final Elements selected = preselected == null ? null : preselected[i];
+            final long start = tracing ? startField(fieldPlan) : 0;
+            try {
+                if (fieldPlan.isList()) {
+                    populateListField(baseUrl, node, selected, newInstance, fieldPlan);
+                } else {
+                    solveAnnotatedFieldWithMappableType(baseUrl, node, selected, newInstance, fieldPlan);
+                }
+            } finally {
+                if (tracing) listener.fieldEnded(fieldPlan, System.nanoTime() - start);
             }
         }
         return newInstance;
     }
 
-    private static <T> @NotNull T getNewInstance(Class<T> clazz) throws InstantiationException, IllegalAccessException,
-            InvocationTargetException {
-        final Constructor<T> constructor;
-        try{
-            constructor = clazz.getDeclaredConstructor();
-        }catch(final NoSuchMethodException e){
-            throw new RuntimeException("If your class is an inner class, perhaps you should declare " +
-                    "'public static class' instead of 'public class'", e);
-        }
-        constructor.setAccessible(true);
-        return constructor.newInstance();
+    private long startField(final FieldPlan fieldPlan) {
+        listener.fieldStarted(fieldPlan);
+        return System.nanoTime();
     }
 
     private Element getFirstOrNullOrCryIfMoreThanOne(
+        final BaseUrl baseUrl,
         final Element node,
-        final boolean isXpath,
-        final String query
+        final Elements selected,
+        final Object newInstance,
+        final FieldPlan fieldPlan
     ){
-        logDebug("\tLook for element, selector isXpath: '"+isXpath+"' selector: '"+query+"'");
-        final Elements elements = (isXpath) ? node.selectXpath("/" + ROOT_FAKE + query) : node.select(query);
-        final int size = elements.size();
-        if (size > 1) {
-            logDebug("\tToo many entries'"+size+ "', selector isXpath: '"+isXpath+"' selector: '"+query+"'");
-            throw new TooManyResultsException(query, size, elements);
-        }
-        if (size == 0) {
-            logDebug("\tNothing found, selector isXpath: '"+isXpath+"' selector: '"+query+"'");
-            return null;
+        return MapperSupport.single(select(baseUrl, node, selected, newInstance, fieldPlan), fieldPlan.mapping());
+    }
+
+    private Elements select(
+        final BaseUrl baseUrl,
+        final Element node,
+        final Elements selected,
+        final Object newInstance,
+        final FieldPlan fieldPlan
+    ) {
+        final Elements nodes;
+        if (selected != null) {
+            nodes = selected;
+        } else if (metered) {
+            final long start = System.nanoTime();
+            nodes = MapperSupport.select(node, fieldPlan.mapping());
+            metrics.recordTime(Metrics.Stage.SELECT, newInstance.getClass(), baseUrl.host(), System.nanoTime() - start);
+        } else {
+            nodes = MapperSupport.select(node, fieldPlan.mapping());
         }
-        Element first = elements.first();
-        logDebug("\tFound '"+ first.text()+ "', selector isXpath: '"+isXpath+"' selector: '"+query+"'");
-        return first;
+        if (tracing) listener.fieldSelected(fieldPlan, nodes.size());
+        return nodes;
+    }
+
+    private void recordConversion(final BaseUrl baseUrl, final Object newInstance, final long start) {
+        metrics.recordTime(Metrics.Stage.CONVERT, newInstance.getClass(), baseUrl.host(), System.nanoTime() - start);
+    }
+
+    private <T> void set(final FieldPlan fieldPlan, final T newInstance, final Object value) {
+        if (tracing) listener.fieldConverted(fieldPlan, value);
+        fieldPlan.set(newInstance, value);
     }
 
     private static void throwException(Class<?> fieldClass) {
         throw new RuntimeException("Can't convert html to class " + fieldClass.getName() + "\n" +
                 "The field type must be a class with Webgrude annotations or one of these types:\n" +
                 List.class.getCanonicalName() + "\n" +
+                LazyList.class.getCanonicalName() + "\n" +
+                Iterable.class.getCanonicalName() + "\n" +
+                Stream.class.getCanonicalName() + "\n" +
                 String.class.getCanonicalName() + "\n" +
                 Integer.class.getCanonicalName() + "\n" +
                 Float.class.getCanonicalName() + "\n" +
@@ -196,222 +578,90 @@ public class Webgrude {
         );
     }
 
-    private <T> void populateField(
-        final String baseUrl,
-        final Element node,
-        final T newInstance,
-        final Field field
-    ) throws IllegalAccessException {
-        final Class<?> fieldType = field.getType();
-        logDebug("\tPopulate field of type '"+fieldType+"'");
-        if (fieldType.equals(java.util.List.class)) {
-            // Does it ever get here?
-            solveAnnotatedListField(baseUrl, node, newInstance, field);
-        } else {
-            solveAnnotatedFieldWithMappableType(baseUrl, node, newInstance, field);
-        }
-    }
-
     private <T> void solveAnnotatedFieldWithMappableType(
-            final String baseUrl,
+            final BaseUrl baseUrl,
             final Element node,
+            final Elements selected,
             final T newInstance,
-            final Field field
-    ) throws IllegalAccessException {
-        Optional<FieldMapping> maybeFieldMapping = FieldMapping.from(field);
-        logDebug("\tAnnotation presence is " + maybeFieldMapping.isPresent());
-        if (maybeFieldMapping.isEmpty()) return;
-
-        final FieldMapping fieldMapping = maybeFieldMapping.get();
-
-        final Element selectedNode = getFirstOrNullOrCryIfMoreThanOne(
-            node,
-            fieldMapping.useXpath(),
-            fieldMapping.value()
-        );
+            final FieldPlan fieldPlan
+    ) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        final FieldMapping fieldMapping = fieldPlan.mapping();
+
+        final Element selectedNode = getFirstOrNullOrCryIfMoreThanOne(baseUrl, node, selected, newInstance, fieldPlan);
         if (selectedNode == null) return;
 
-        final Class<?> fieldType = field.getType();
-        if (typeIsVisitable(fieldType)) {
-            logDebug("\tType is visitable");
-            final Type genericType = field.getGenericType();
-
-            if (genericType instanceof ParameterizedType) {
-                final ParameterizedType parameterizedType = (ParameterizedType) genericType;
-                final Type actualType = parameterizedType.getActualTypeArguments()[0];
-
-                if (actualType instanceof Class<?>) {
-                    final Class<?> clazz = (Class<?>) actualType;
-                    field.setAccessible(true);
-                    if (!field.canAccess(newInstance)) {
-                        throw new RuntimeException("Can't access field " + field.getName());
-                    }
-                    try{
-                        Object fieldValue = visitableForNode(
-                            this,
-                            selectedNode,
-                            clazz,
-                            baseUrl
-                        );
-                        logDebug("\t\tSet ('"+field.getName()+"' = '"+fieldValue+"')");
-                        field.set(newInstance, fieldValue);
-                        return;
-                    } catch (final IllegalAccessException e) {
-                        throw new RuntimeException(e);
-                    }
+        final long start = metered ? System.nanoTime() : 0;
+        switch (fieldPlan.kind()) {
+            case LINK: {
+                if (fieldPlan.valueClass() == null) {
+                    throwException(fieldPlan.fieldType());
                 }
+                set(fieldPlan, newInstance, MapperSupport.link(this, selectedNode, fieldPlan.valueClass(), baseUrl));
+                if (metered) recordConversion(baseUrl, newInstance, start);
+                return;
             }
-            throwException(fieldType);
-        }
-
-        if (typeIsKnown(fieldType)) {
-            logDebug("\tType is known");
-            field.setAccessible(true);
-            if (!field.canAccess(newInstance)) {
-                throw new RuntimeException("Can't access field " + field.getName());
-            }
-            Object value = instanceForNode(selectedNode, fieldMapping, fieldType, baseUrl);
-            logDebug("\t\tSet ('"+field.getName()+"' = '"+value+"')");
-            field.set(newInstance, value);
-            return;
-        }
-
-        try {
-            logDebug("\tType is unknown");
-            Element element = new Element(ROOT_FAKE, baseUrl);
-            element.appendChildren(selectedNode.children());
-            Object o = internalLoadContents(baseUrl, element, fieldType);
-            field.setAccessible(true);
-            if (!field.canAccess(newInstance)) {
-                logDebug("\tCan't access field " + field.getName());
-                throw new RuntimeException("Can't access field " + field.getName());
-            }
-            logDebug("\tNew instance is '"+o+"'");
-            logDebug("\t\tSet ('"+field.getName()+"' = '"+o+"')");
-            field.set(newInstance, o);
-        } catch (InstantiationException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-
-    }
-
-    private <T> void solveAnnotatedListField(
-        final String baseUrl,
-        final Element node,
-        final T newInstance,
-        final Field field
-    ) {
-        final Type genericType = field.getGenericType();
-        final Optional<FieldMapping> maybeFieldMapping = FieldMapping.from(field);
-        maybeFieldMapping.ifPresent( fieldMapping -> {
-            final String value = fieldMapping.value();
-            final Elements nodes = fieldMapping.useXpath() ? node.selectXpath("/root" + value) : node.select(value);
-            final Type type = ((ParameterizedType) genericType).getActualTypeArguments()[0];
-            if (type instanceof ParameterizedType) {
-                field.setAccessible(true);
-                try {
-                    final ArrayList<Link<Object>> listOfLinks = populateListOfLinks(
-                        baseUrl,
-                        nodes,
-                        (ParameterizedType) type
-                    );
-                    logDebug("\t\tSet ('"+field.getName()+"' = '"+listOfLinks+"')");
-                    field.set(newInstance, listOfLinks);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
+            case VALUE: {
+                if (fieldPlan.isPrimitive()) {
+                    setPrimitiveForNode(selectedNode, newInstance, fieldPlan);
+                } else {
+                    set(fieldPlan, newInstance, instanceForNode(selectedNode, fieldMapping, fieldPlan.valueType(), fieldPlan.fieldType(), baseUrl));
                 }
+                if (metered) recordConversion(baseUrl, newInstance, start);
                 return;
             }
-
-            final Class<?> listClass = (Class<?>) type;
-            field.setAccessible(true);
-            try {
-                List<?> valueList = populateList(baseUrl, nodes, fieldMapping, listClass);
-                logDebug("\t\tSet ('"+field.getName()+"' = '"+valueList+"')");
-                field.set(newInstance, valueList);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+            default: {
+                set(fieldPlan, newInstance, internalLoadContents(baseUrl, selectedNode, MappingPlan.of(fieldPlan.fieldType())));
             }
-        });
+        }
     }
 
     private <T> void populateListField(
-        final String baseUrl,
+        final BaseUrl baseUrl,
         final Element node,
+        final Elements selected,
         final T newInstance,
-        final Field field
+        final FieldPlan fieldPlan
     ) {
-        final Class<?> listClass = getListClass(field);
-
-        logDebug("\tPopulate list of '"+listClass.getName()+"´");
-
-        final Optional<FieldMapping> maybeFieldMapping = FieldMapping.from(field);
-
-        maybeFieldMapping.ifPresent(fieldMapping -> {
-            final String query = fieldMapping.value();
-            final Elements nodes = fieldMapping.useXpath() ? node.selectXpath("/"+ ROOT_FAKE + query) : node.select(query);
-            field.setAccessible(true);
-            try {
-                List<?> value = populateList(baseUrl, nodes, fieldMapping, listClass);
-                logDebug("\t\tSet ('"+field.getName()+"' = '"+value+"')");
-                field.set(newInstance, value);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
-        });
-    }
-
-    @Nullable
-    private static Class<?> getListClass(Field field) {
-        final Type genericType = field.getGenericType();
-        ParameterizedType parameterizedType = (ParameterizedType) genericType;
-        Type actualTypeArgument = parameterizedType.getActualTypeArguments()[0];
-
-        Class<?> listClass = null;
-        if (actualTypeArgument instanceof Class) {
-            listClass = (Class<?>) actualTypeArgument;
-        }
-        if (actualTypeArgument instanceof ParameterizedType){
-            listClass = (Class<?>) ((ParameterizedType)actualTypeArgument).getRawType();
+        final Class<?> listClass = fieldPlan.valueClass();
+        final Elements nodes = select(baseUrl, node, selected, newInstance, fieldPlan);
+        final Function<Element, Object> itemMapper = fieldPlan.kind() == FieldPlan.Kind.LIST_OF_LINKS
+                ? linkMapper(baseUrl, listClass)
+                : itemMapper(baseUrl, fieldPlan);
+        if (fieldPlan.isLazy()) {
+            final LazyList<Object> lazyList = new LazyList<>(nodes, itemMapper);
+            set(fieldPlan, newInstance, fieldPlan.isStream() ? lazyList.stream() : lazyList);
+            return;
         }
-        return listClass;
+        final long start = metered ? System.nanoTime() : 0;
+        set(fieldPlan, newInstance, MapperSupport.list(this, nodes, itemMapper));
+        // Lists of nested classes record the fields of their items instead
+        if (metered && (fieldPlan.valueType() != null || fieldPlan.kind() == FieldPlan.Kind.LIST_OF_LINKS)) recordConversion(baseUrl, newInstance, start);
     }
 
-    private <T> List<T> populateList(
-        final String baseUrl,
-        final Elements nodes,
-        final FieldMapping fieldMapping,
-        final Class<T> clazz
+    private Function<Element, Object> itemMapper(
+        final BaseUrl baseUrl,
+        final FieldPlan fieldPlan
     ) {
-        final ArrayList<T> newInstanceList = new ArrayList<>();
-        for (final Element node : nodes) {
-            if (typeIsKnown(clazz)) {
-                logDebug("\t\tInstantiate known type");
-                newInstanceList.add(instanceForNode(node, fieldMapping, clazz, baseUrl));
-            } else {
-                try {
-                    logDebug("\t\tInstantiate unknown type '"+clazz.getName()+"'");
-                    newInstanceList.add(internalLoadContents(baseUrl, node, clazz));
-                } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+        final ValueType valueType = fieldPlan.valueType();
+        final Class<?> clazz = fieldPlan.valueClass();
+        if (valueType != null) {
+            return node -> instanceForNode(node, fieldPlan.mapping(), valueType, clazz, baseUrl);
         }
-        return newInstanceList;
+        final MappingPlan<?> itemPlan = MappingPlan.of(clazz);
+        return node -> {
+            try {
+                return internalLoadContents(baseUrl, node, itemPlan);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        };
     }
 
-    private <T> ArrayList<Link<T>> populateListOfLinks(
-        final String baseUrl,
-        final Elements nodes,
-        final ParameterizedType paraType
+    private Function<Element, Object> linkMapper(
+        final BaseUrl baseUrl,
+        final Class<?> clazz
     ) {
-        final ArrayList<Link<T>> newInstanceList = new ArrayList<>();
-        for (final Element node : nodes) {
-            final Class<?> clazz = (Class<?>) paraType.getActualTypeArguments()[0];
-            final Link<T> link = visitableForNode(this, node, clazz, baseUrl);
-            newInstanceList.add(link);
-        }
-        return newInstanceList;
+        return node -> MapperSupport.link(this, node, clazz, baseUrl);
     }
 
     private <T> void invokeOrThrow(final Method method, final T instance) {
@@ -433,151 +683,192 @@ public class Webgrude {
      * @return true if the class is known and directly mappable, false otherwise
      */
     public boolean typeIsKnown(final Class c) {
-        return c.equals(String.class) ||
-                c.equals(Integer.class) || c.getSimpleName().equals("int") ||
-                c.equals(Float.class) || c.getSimpleName().equals("float") ||
-                c.equals(Boolean.class) || c.getSimpleName().equals("boolean") ||
-                c.equals(Link.class) ||
-                c.equals(Element.class) ||
-                c.equals(List.class) ||
-                c.equals(Date.class);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> T instanceForNode(
+        return ValueType.of(c) != null || c.equals(List.class) || c.equals(LazyList.class)
+                || c.equals(Iterable.class) || c.equals(Stream.class);
+    }
+
+    private Object instanceForNode(
             final Element node,
             final FieldMapping fieldMapping,
-            final Class<T> c,
-            final String baseUrl
+            final ValueType valueType,
+            final Class<?> c,
+            final BaseUrl baseUrl
     ) {
-        final String attribute = fieldMapping.attr();
-        final String format = fieldMapping.format();
-        final String locale = fieldMapping.locale();
-        final String defValue = fieldMapping.defValue();
-
-        String value;
-
-
-        logDebug("\t\tNode instance type '"+c.getName()+"'");
-
-        try {
-            if (c.equals(Element.class)) {
-                logDebug("\t\tElement created with content '"+node.text()+"'");
-                return (T) node;
-            }
+        switch (valueType) {
+            case ELEMENT:
+                return node;
+            case LINK:
+                return MapperSupport.link(this, node, c, baseUrl);
+            case DATE:
+                return MapperSupport.dateValue(node, fieldMapping);
+            case INTEGER:
+                return MapperSupport.intValue(node, fieldMapping);
+            case FLOAT:
+                return MapperSupport.floatValue(node, fieldMapping);
+            case BOOLEAN:
+                return MapperSupport.booleanValue(node, fieldMapping);
+            default:
+                return MapperSupport.stringValue(node, fieldMapping);
+        }
+    }
 
-            if (c.equals(Link.class)) {
-                logDebug("\t\tElement created with content '"+node.text()+"'");
-                return (T) new Link<>(
-                    this,
-                    node,
-                    c,
-                    baseUrl
-                );
+    private void setPrimitiveForNode(
+            final Element node,
+            final Object newInstance,
+            final FieldPlan fieldPlan
+    ) {
+        final FieldMapping fieldMapping = fieldPlan.mapping();
+        switch (fieldPlan.valueType()) {
+            case INTEGER: {
+                final int intValue = MapperSupport.intValue(node, fieldMapping);
+                if (tracing) listener.fieldConverted(fieldPlan, intValue);
+                fieldPlan.setInt(newInstance, intValue);
+                return;
             }
-
-            if (attribute != null && !attribute.isEmpty()) {
-                if (attribute.equals("html")) {
-                    value = node.html();
-                    logDebug("\t\tUsing html '"+value+"'");
-                } else if (attribute.equals("outerHtml")) {
-                    value = node.outerHtml();
-                    logDebug("\t\tUsing outerHtml '"+value+"'");
-                } else {
-                    value = node.attr(attribute);
-                    logDebug("\t\tUsing text '"+value+"'");
-                }
-            } else {
-                value = node.text();
-                logDebug("\t\tUsing text '"+value+"'");
+            case FLOAT: {
+                final float floatValue = MapperSupport.floatValue(node, fieldMapping);
+                if (tracing) listener.fieldConverted(fieldPlan, floatValue);
+                fieldPlan.setFloat(newInstance, floatValue);
+                return;
             }
-
-            if(!c.equals(Date.class) && format != null && !format.isEmpty()){
-                final Pattern p = Pattern.compile(format);
-                final Matcher matcher = p.matcher(value);
-                final boolean found = matcher.find();
-                if(found){
-                    value = matcher.group(1);
-                    if(value.isEmpty()){
-                        value = defValue;
-                    }
-                }else{
-                    value = defValue;
-                }
-                logDebug("\t\tUsing date '"+value+"'");
+            default: {
+                final boolean booleanValue = MapperSupport.booleanValue(node, fieldMapping);
+                if (tracing) listener.fieldConverted(fieldPlan, booleanValue);
+                fieldPlan.setBoolean(newInstance, booleanValue);
             }
+        }
+    }
 
-            if (c.equals(String.class)) {
-                logDebug("\t\tFinal value string '"+value+"'");
-                return (T) value;
-            }
+    /**
+     * Builds a Webgrude instance.
+     */
+    public static final class Builder {
+
+        private boolean debug;
+        private MappingListener listener;
+        private Metrics metrics;
+        private boolean keepLinkElements;
+        private MappingCache mappingCache;
+        private ForkJoinPool parallelListPool;
+        private int parallelListThreshold;
+        private boolean singlePassSelection;
+
+        private Builder() {
+        }
 
-            if (c.equals(Date.class)) {
-                Locale loc = getLocale(locale);
-                final DateFormat df = new SimpleDateFormat(format, loc);
-                logDebug("\t\tFinal value date '"+df.parse(value)+"'");
-                return (T) df.parse(value);
-            }
+        /**
+         * Prints the mapping of each field to the standard output, unless another
+         * {@link #mappingListener(MappingListener) listener} is set.
+         *
+         * @param debug whether to enable debug logging, false by default
+         * @return this builder
+         */
+        public Builder debug(final boolean debug) {
+            this.debug = debug;
+            return this;
+        }
 
-            if (c.equals(Integer.class) || c.getSimpleName().equals("int")) {
-                logDebug("\t\tFinal value int '"+value+"'");
-                return (T) Integer.valueOf(value);
-            }
+        /**
+         * Sends the steps of mapping each field to a listener, for debug output or profiling.
+         * Classes are then mapped by reflection, even if they have a generated mapper.
+         *
+         * @param listener the listener, or null for none, which is the default
+         * @return this builder
+         */
+        public Builder mappingListener(final MappingListener listener) {
+            this.listener = listener;
+            return this;
+        }
 
-            if (c.equals(Float.class) || c.getSimpleName().equals("float")) {
-                Locale loc = getLocale(locale);
-                final NumberFormat nf = NumberFormat.getInstance(loc);
-                Number number = nf.parse(value);
-                logDebug("\t\tFinal value float '"+value+"'");
-                return (T) Float.valueOf(number.floatValue());
-            }
+        /**
+         * Records the time spent parsing and mapping pages, and selecting and converting each
+         * field of classes mapped by reflection. An {@link OkHttpBrowser} using this Webgrude also
+         * records the time and bytes of its requests. Nothing is recorded by default.
+         *
+         * @param metrics the metrics, or null for none
+         * @return this builder
+         * @see HistogramMetrics
+         */
+        public Builder metrics(final Metrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
 
-            if (c.equals(Boolean.class) || c.getSimpleName().equals("boolean")) {
-                logDebug("\t\tFinal value boolean '"+value+"'");
-                return (T) Boolean.valueOf(value);
-            }
-        } catch (final Exception e) {
-            throw new WrongTypeForField(node, attribute, c, e);
+        /**
+         * By default a {@link Link} only keeps its url and text, so links that outlive the mapping
+         * don't keep the whole source page in memory.
+         *
+         * @param keepLinkElements whether links keep the element they were mapped from, false by default
+         * @return this builder
+         * @see Link#getHrefElement()
+         */
+        public Builder keepLinkElements(final boolean keepLinkElements) {
+            this.keepLinkElements = keepLinkElements;
+            return this;
         }
 
-        logDebug("\t\tFinal value '"+value+"'");
-        return (T) value;
-    }
+        /**
+         * Reuses pages already mapped from the same contents, url and class. Can be shared by many
+         * Webgrude instances.
+         *
+         * @param mappingCache the cache, or null to always map, which is the default
+         * @return this builder
+         */
+        public Builder mappingCache(final MappingCache mappingCache) {
+            this.mappingCache = mappingCache;
+            return this;
+        }
 
-    private Locale getLocale(String locale) {
-        Locale loc = Locale.getDefault();
-        if(locale != null && !locale.isEmpty()){
+        /**
+         * Maps lists with many nodes, like large tables, on the common fork/join pool.
+         *
+         * @param threshold the number of nodes from which a list is mapped in parallel
+         * @return this builder
+         * @see #parallelLists(ForkJoinPool, int)
+         */
+        public Builder parallelLists(final int threshold) {
+            return parallelLists(ForkJoinPool.commonPool(), threshold);
+        }
 
-            if (locale.contains("_")) {
-                String[] parts = locale.split("_");
-                loc = new Locale.Builder()
-                        .setLanguage(parts[0])
-                        .setRegion(parts[1])
-                        .build();
-            } else {
-                loc = new Locale.Builder()
-                        .setLanguage(locale)
-                        .build();
+        /**
+         * Maps lists with at least {@code threshold} nodes on a fork/join pool, splitting the nodes
+         * until each task has no more than {@code threshold} of them. Items keep the node order and
+         * the exception of the first node that fails is thrown, as when mapping on the caller
+         * thread. Lists are mapped on the caller thread by default.
+         *
+         * @param pool      the pool, or null to map lists on the caller thread
+         * @param threshold the number of nodes from which a list is mapped in parallel
+         * @return this builder
+         */
+        public Builder parallelLists(final ForkJoinPool pool, final int threshold) {
+            if (threshold < 1) {
+                throw new IllegalArgumentException("The parallel list threshold must be positive: " + threshold);
             }
+            this.parallelListPool = pool;
+            this.parallelListThreshold = threshold;
+            return this;
         }
-        return loc;
-    }
 
-    private boolean typeIsVisitable(final Class<?> fieldClass) {
-        return fieldClass.equals(Link.class);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T> T visitableForNode(
-            final Webgrude pageToClassMapper,
-            final Element node,
-            final Class c,
-            final String currentPageUrl
-    ) {
-        return (T) new Link<T>(pageToClassMapper, node, c, currentPageUrl);
-    }
+        /**
+         * Selects the fields of a class in a single pass over the page instead of one pass per
+         * field. Fields with combinators, like {@code div > a}, or with pseudo classes looking at
+         * other elements, like {@code :has()}, are still selected on their own. Helps classes with
+         * many fields on large pages. Generated mappers always select field by field.
+         *
+         * @param singlePassSelection whether to select fields in a single pass, false by default
+         * @return this builder
+         * @see MappingPlan#selectInOnePass(Element)
+         */
+        public Builder singlePassSelection(final boolean singlePassSelection) {
+            this.singlePassSelection = singlePassSelection;
+            return this;
+        }
 
-    private void logDebug(final String log) {
-        if (debug) System.out.println(log);
+        /**
+         * @return a new Webgrude instance with this builder options
+         */
+        public Webgrude build() {
+            return new Webgrude(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package webGrude;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the elements at a simple path of an XML document with StAX, building one element at a
+ * time. Only the current element and the names of its ancestors are kept in memory.
+ */
+final class XmlItems implements Iterator<Element> {
+
+    private static final Pattern SIMPLE_PATH = Pattern.compile("(/[\\w.\\-]+(:[\\w.\\-]+)?)+");
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private final XMLStreamReader reader;
+    private final String[] path;
+    private final List<String> ancestors = new ArrayList<>();
+    private Element next;
+
+    private XmlItems(final XMLStreamReader reader, final String[] path) {
+        this.reader = reader;
+        this.path = path;
+    }
+
+    /**
+     * @param xml     the document, it is not closed
+     * @param charset the document charset, or null to detect it
+     * @param path    an absolute path of element names, like {@code /feed/product}
+     * @return the elements at the path, in document order. Closing the stream stops reading.
+     */
+    static Stream<Element> stream(final InputStream xml, final Charset charset, final String path) {
+        if (!SIMPLE_PATH.matcher(path).matches()) {
+            throw new IllegalArgumentException("Streamed XML paths must be absolute element names like "
+                    + "/feed/item, without predicates or wildcards: " + path);
+        }
+        final XMLStreamReader reader;
+        try {
+            reader = charset == null
+                    ? FACTORY.createXMLStreamReader(xml)
+                    : FACTORY.createXMLStreamReader(xml, charset.name());
+        } catch (final XMLStreamException e) {
+            throw unchecked(e);
+        }
+        final XmlItems items = new XmlItems(reader, path.substring(1).split("/"));
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(items, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(items::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Element next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Element element = next;
+        next = null;
+        return element;
+    }
+
+    private Element readNext() {
+        try {
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = name();
+                    if (ancestors.size() == path.length - 1 && atPath(name)) {
+                        return readElement();
+                    }
+                    ancestors.add(name);
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    ancestors.remove(ancestors.size() - 1);
+                }
+            }
+            return null;
+        } catch (final XMLStreamException e) {
+            throw unchecked(e);
+        }
+    }
+
+    private boolean atPath(final String name) {
+        for (int i = 0; i < ancestors.size(); i++) {
+            if (!ancestors.get(i).equals(path[i])) return false;
+        }
+        return name.equals(path[path.length - 1]);
+    }
+
+    /**
+     * Builds the element the reader is at, leaving the reader at its end tag.
+     */
+    private Element readElement() throws XMLStreamException {
+        final Element root = newElement();
+        Element current = root;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    final Element child = newElement();
+                    current.appendChild(child);
+                    current = child;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (current == root) {
+                        return root;
+                    }
+                    current = current.parent();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(new TextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(new CDataNode(reader.getText()));
+                    break;
+                default:
+            }
+        }
+        throw new XMLStreamException("Unexpected end of document inside " + root.tagName());
+    }
+
+    private Element newElement() {
+        final Element element = new Element(name(), Parser.NamespaceXml);
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String prefix = reader.getAttributePrefix(i);
+            final String localName = reader.getAttributeLocalName(i);
+            element.attr(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName,
+                    reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private String name() {
+        final String prefix = reader.getPrefix();
+        return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
+
+    private void close() {
+        try {
+            reader.close();
+        } catch (final XMLStreamException e) {
+            throw unchecked(e);
+        }
+    }
+
+    private static UncheckedIOException unchecked(final XMLStreamException e) {
+        return new UncheckedIOException(new IOException(e.getMessage(), e));
+    }
+
+    private static XMLInputFactory newFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Feeds come from other servers, don't resolve their DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
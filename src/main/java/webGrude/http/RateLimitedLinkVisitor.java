@@ -0,0 +1,157 @@
+package webGrude.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link LinkVisitor} that paces the visits to each host.
+ * <p>
+ * Every host has its own token bucket, refilled at a steady rate and holding up to a burst of
+ * tokens. A visit takes a token, waiting for the next one when the bucket is empty, so visits to
+ * the same host are spaced evenly while visits to different hosts don't wait for each other.
+ * Optionally the robots.txt of each host is read on the first visit, and its Crawl-delay is
+ * honored when it is longer than the configured rate.
+ * <pre>
+ * {@code LinkVisitor polite = new RateLimitedLinkVisitor(new OkHttpBrowser(), 2);
+ * List<Article> articles = Link.visitAll(page.articleLinks, polite, 30);}
+ * </pre>
+ * It can wrap any visitor, the robots.txt is fetched with the wrapped visitor.
+ */
+public class RateLimitedLinkVisitor implements LinkVisitor {
+
+    private final LinkVisitor linkVisitor;
+    private final long intervalNanos;
+    private final int burst;
+    private final boolean honorCrawlDelay;
+    private final Map<String, HostBucket> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a visitor that visits each host at most requestsPerSecond times a second, without
+     * bursts and ignoring robots.txt.
+     *
+     * @param linkVisitor       the visitor that fetches the pages
+     * @param requestsPerSecond the maximum rate of visits to the same host
+     */
+    public RateLimitedLinkVisitor(final LinkVisitor linkVisitor, final double requestsPerSecond) {
+        this(linkVisitor, requestsPerSecond, 1, false);
+    }
+
+    /**
+     * Creates a visitor that visits each host at most requestsPerSecond times a second.
+     *
+     * @param linkVisitor       the visitor that fetches the pages
+     * @param requestsPerSecond the maximum rate of visits to the same host
+     * @param burst             how many visits to an idle host can be made without waiting
+     * @param honorCrawlDelay   whether to read the robots.txt Crawl-delay of each host
+     */
+    public RateLimitedLinkVisitor(
+            final LinkVisitor linkVisitor,
+            final double requestsPerSecond,
+            final int burst,
+            final boolean honorCrawlDelay
+    ) {
+        if (!(requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive, was " + requestsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1, was " + burst);
+        }
+        this.linkVisitor = linkVisitor;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.burst = burst;
+        this.honorCrawlDelay = honorCrawlDelay;
+    }
+
+    @Override
+    public String visitLink(final String href) {
+        final String host = host(href);
+        final HostBucket bucket = hosts.computeIfAbsent(host, HostBucket::new);
+        try {
+            final long waitNanos = bucket.reserve(bucket.interval());
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GetException(e, href);
+        }
+        return linkVisitor.visitLink(href);
+    }
+
+    private static String host(final String href) {
+        try {
+            final URI uri = new URI(href);
+            final String authority = uri.getRawAuthority();
+            return authority == null ? "" : uri.getScheme() + "://" + authority.toLowerCase(Locale.ROOT);
+        } catch (final Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * A token bucket, kept as the time the next token is due (the generic cell rate algorithm).
+     */
+    private final class HostBucket {
+
+        private final String host;
+        private final AtomicBoolean intervalRequested = new AtomicBoolean();
+        private final CompletableFuture<Long> interval = new CompletableFuture<>();
+        private long nextToken = System.nanoTime();
+
+        private HostBucket(final String host) {
+            this.host = host;
+        }
+
+        /**
+         * Returns the time between visits. The first caller reads the robots.txt, without holding
+         * the bucket lock, and the other visits to the host wait for it.
+         *
+         * @return the time between visits in nanoseconds
+         */
+        long interval() throws InterruptedException {
+            if (intervalRequested.compareAndSet(false, true)) {
+                try {
+                    interval.complete(honorCrawlDelay ? readCrawlDelay() : intervalNanos);
+                } finally {
+                    interval.complete(intervalNanos);
+                }
+            }
+            try {
+                return interval.get();
+            } catch (final ExecutionException e) {
+                return intervalNanos;
+            }
+        }
+
+        /**
+         * @return how long to wait before visiting
+         */
+        synchronized long reserve(final long interval) {
+            final long now = System.nanoTime();
+            final long tolerance = interval * (burst - 1);
+            final long allowedAt = nextToken - tolerance;
+            nextToken = Math.max(nextToken, now) + interval;
+            return allowedAt - now;
+        }
+
+        private long readCrawlDelay() {
+            if (host.isEmpty()) return intervalNanos;
+            try {
+                final Duration crawlDelay = RobotsTxt.crawlDelay(linkVisitor.visitLink(host + "/robots.txt"));
+                if (crawlDelay != null && crawlDelay.toNanos() > intervalNanos) {
+                    return crawlDelay.toNanos();
+                }
+            } catch (final RuntimeException e) {
+                // A host without a readable robots.txt has no crawl delay
+            }
+            return intervalNanos;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package webGrude.http;
+
+import java.time.Duration;
+
+/**
+ * Reads the directives of a robots.txt file that apply to every user agent.
+ */
+final class RobotsTxt {
+
+    private RobotsTxt() {
+    }
+
+    /**
+     * @param robotsTxt the robots.txt contents
+     * @return the Crawl-delay for the {@code *} user agent, or null if there is none
+     */
+    static Duration crawlDelay(final String robotsTxt) {
+        boolean readingAgents = false;
+        boolean anyAgent = false;
+        for (final String rawLine : robotsTxt.split("\r\n|\r|\n")) {
+            final int comment = rawLine.indexOf('#');
+            final String line = (comment < 0 ? rawLine : rawLine.substring(0, comment)).trim();
+            final int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            final String key = line.substring(0, colon).trim().toLowerCase();
+            final String value = line.substring(colon + 1).trim();
+            if (key.equals("user-agent")) {
+                if (!readingAgents) {
+                    anyAgent = false;
+                    readingAgents = true;
+                }
+                anyAgent |= value.equals("*");
+                continue;
+            }
+            readingAgents = false;
+            if (anyAgent && key.equals("crawl-delay")) {
+                try {
+                    return Duration.ofNanos((long) (Double.parseDouble(value) * 1_000_000_000L));
+                } catch (final NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
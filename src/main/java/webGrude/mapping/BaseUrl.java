@@ -0,0 +1,205 @@
+package webGrude.mapping;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The URL relative links on a page are resolved against.
+ * <p>
+ * It is parsed once per page and shared by every link mapped from it. Links are resolved with
+ * the RFC 3986 rules browsers use, so {@code ?query}, {@code ../}, {@code //host} and
+ * {@code #fragment} references get the same URL a browser would visit. Hrefs or base URLs that
+ * are not valid URIs, like {@code /wiki/Foo bar} or a base with a {@code {0}} template, are
+ * resolved leniently the way jsoup resolves {@code abs:} attributes.
+ */
+public final class BaseUrl {
+
+    private final String url;
+    private final URI uri;
+    private final String host;
+
+    private BaseUrl(final String url) {
+        this.url = url == null ? "" : url.trim();
+        this.uri = parse(this.url);
+        this.host = host(this.url, uri);
+    }
+
+    private BaseUrl(final String url, final String host) {
+        this.url = url;
+        this.uri = parse(url);
+        this.host = host;
+    }
+
+    /**
+     * @param url the page URL, may be empty
+     * @return the base URL for a page
+     */
+    public static BaseUrl of(final String url) {
+        return new BaseUrl(url);
+    }
+
+    /**
+     * Returns the base URL for a parsed page, honoring the first {@code <base href>} element in
+     * the page head.
+     *
+     * @param document the parsed page
+     * @param url      the page URL, may be empty
+     * @return the base URL for the page
+     */
+    public static BaseUrl of(final Document document, final String url) {
+        final BaseUrl pageUrl = new BaseUrl(url);
+        for (final Element root : document.children()) {
+            for (final Element section : root.children()) {
+                if (section.normalName().equals("head")) {
+                    final Element base = section.selectFirst("base[href]");
+                    return base == null ? pageUrl : new BaseUrl(pageUrl.resolve(base.attr("href")).trim(), pageUrl.host);
+                }
+            }
+        }
+        return pageUrl;
+    }
+
+    /**
+     * @return the URL relative links are resolved against
+     */
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return the host of the page URL, even if a {@code <base href>} points to another host, or
+     * an empty string if it has none
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Resolves a link href. If there is no absolute base URL, the href is returned as it is.
+     *
+     * @param href the href attribute value
+     * @return the absolute URL of the link
+     */
+    public String resolve(final String href) {
+        final String reference = href.trim();
+        if (uri == null) {
+            return resolveLeniently(reference);
+        }
+        final URI ref;
+        try {
+            ref = new URI(reference);
+        } catch (final URISyntaxException e) {
+            return resolveLeniently(reference);
+        }
+        if (ref.getScheme() != null) {
+            return reference;
+        }
+
+        String authority = uri.getRawAuthority();
+        String path;
+        String query = ref.getRawQuery();
+        final String refPath = ref.getRawPath() == null ? "" : ref.getRawPath();
+        if (ref.getRawAuthority() != null) {
+            authority = ref.getRawAuthority();
+            path = removeDotSegments(refPath);
+        } else if (refPath.isEmpty()) {
+            path = basePath();
+            if (query == null) {
+                query = uri.getRawQuery();
+            }
+        } else if (refPath.startsWith("/")) {
+            path = removeDotSegments(refPath);
+        } else {
+            path = removeDotSegments(merge(refPath));
+        }
+
+        final StringBuilder resolved = new StringBuilder(url.length() + reference.length());
+        resolved.append(uri.getScheme()).append(':');
+        if (authority != null) {
+            resolved.append("//").append(authority);
+        }
+        resolved.append(path);
+        if (query != null) {
+            resolved.append('?').append(query);
+        }
+        if (ref.getRawFragment() != null) {
+            resolved.append('#').append(ref.getRawFragment());
+        }
+        return resolved.toString();
+    }
+
+    private String resolveLeniently(final String reference) {
+        final String resolved = StringUtil.resolve(url, reference);
+        return resolved.isEmpty() ? reference : resolved;
+    }
+
+    private String basePath() {
+        final String path = uri.getRawPath();
+        return path == null ? "" : path;
+    }
+
+    private String merge(final String refPath) {
+        final String basePath = basePath();
+        if (uri.getRawAuthority() != null && basePath.isEmpty()) {
+            return "/" + refPath;
+        }
+        return basePath.substring(0, basePath.lastIndexOf('/') + 1) + refPath;
+    }
+
+    private static String removeDotSegments(final String path) {
+        if (path.indexOf('.') < 0) {
+            return path;
+        }
+        final boolean absolute = path.startsWith("/");
+        final String[] segments = path.split("/", -1);
+        final List<String> output = new ArrayList<>(segments.length);
+        for (int i = absolute ? 1 : 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            final boolean last = i == segments.length - 1;
+            if (segment.equals("..")) {
+                if (!output.isEmpty()) {
+                    output.remove(output.size() - 1);
+                }
+                if (last) output.add("");
+            } else if (segment.equals(".")) {
+                if (last) output.add("");
+            } else {
+                output.add(segment);
+            }
+        }
+        return (absolute ? "/" : "") + String.join("/", output);
+    }
+
+    private static URI parse(final String url) {
+        try {
+            final URI uri = new URI(url);
+            return uri.isAbsolute() && !uri.isOpaque() ? uri : null;
+        } catch (final URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static String host(final String url, final URI uri) {
+        if (uri != null) {
+            return uri.getHost() == null ? "" : uri.getHost();
+        }
+        try {
+            return new URL(url).getHost();
+        } catch (final MalformedURLException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
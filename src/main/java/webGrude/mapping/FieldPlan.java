@@ -0,0 +1,282 @@
+package webGrude.mapping;
+
+import webGrude.mapping.elements.FieldMapping;
+import webGrude.mapping.elements.Link;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The resolved mapping of a single annotated field.
+ * <p>
+ * Holds everything that can be known about a field before seeing a document: its
+ * {@link FieldMapping}, how it is populated, the type of its values and a
+ * {@link MethodHandle} bound to write it, with unboxed setters for primitive fields. Built once per field by {@link MappingPlan}.
+ */
+public final class FieldPlan {
+
+    /**
+     * A compound of type, id, class, attribute and pseudo class selectors, without combinators
+     * or pseudo classes matching other elements.
+     */
+    private static final Pattern SIMPLE_SELECTOR = Pattern.compile(
+            "\\s*[\\w\\-*|]*(?:#[\\w\\-]+|\\.[\\w\\-]+|\\[[^\\]]*]"
+                    + "|:(?!has\\b|not\\b|is\\b|where\\b|matchText\\b)[\\w\\-]+(?:\\([^()]*\\))?)*\\s*");
+
+    /**
+     * How a field is populated from the selected nodes.
+     */
+    public enum Kind {
+        /** A single value of a {@link ValueType}. */
+        VALUE,
+        /** A single {@link Link}. */
+        LINK,
+        /** A single instance of a class with Webgrude annotations. */
+        NESTED,
+        /** A list, {@link LazyList}, {@link Iterable} or {@link Stream} of values or of annotated classes. */
+        LIST,
+        /** A list, {@link LazyList}, {@link Iterable} or {@link Stream} of {@link Link}. */
+        LIST_OF_LINKS
+    }
+
+    private final Field field;
+    private final FieldMapping mapping;
+    private final Kind kind;
+    private final Class<?> valueClass;
+    private final ValueType valueType;
+    private final MethodHandle setter;
+    private final MethodHandle primitiveSetter;
+    private final boolean simpleSelector;
+
+    FieldPlan(final Field field, final FieldMapping mapping) {
+        this.field = field;
+        this.mapping = mapping;
+        final Class<?> fieldType = field.getType();
+        if (isContainer(fieldType)) {
+            if (!(field.getGenericType() instanceof ParameterizedType)) {
+                throw new RuntimeException(fieldType.getSimpleName() + " field " + field.getName() + " must declare its item type");
+            }
+            final Type itemType = typeArgument(field.getGenericType());
+            if (itemType instanceof ParameterizedType
+                    && ((ParameterizedType) itemType).getRawType().equals(Link.class)) {
+                this.kind = Kind.LIST_OF_LINKS;
+                this.valueClass = linkTarget(itemType);
+                this.valueType = ValueType.LINK;
+            } else {
+                this.kind = Kind.LIST;
+                this.valueClass = rawClass(itemType);
+                this.valueType = valueTypeOf(valueClass);
+            }
+        } else if (fieldType.equals(Link.class)) {
+            this.kind = Kind.LINK;
+            this.valueClass = linkTarget(field.getGenericType());
+            this.valueType = ValueType.LINK;
+        } else {
+            this.valueType = ValueType.of(fieldType);
+            this.kind = valueType == null ? Kind.NESTED : Kind.VALUE;
+            this.valueClass = fieldType;
+        }
+        this.simpleSelector = !mapping.useXpath() && isSimple(mapping.value());
+        field.setAccessible(true);
+        try {
+            final MethodHandle fieldSetter = MethodHandles.lookup().unreflectSetter(field);
+            this.setter = fieldSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.primitiveSetter = fieldType.isPrimitive()
+                    ? fieldSetter.asType(MethodType.methodType(void.class, Object.class, fieldType))
+                    : null;
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException("Can't access field " + field.getName(), e);
+        }
+    }
+
+    /**
+     * @return the reflected field
+     */
+    public Field field() {
+        return field;
+    }
+
+    /**
+     * @return the field name
+     */
+    public String name() {
+        return field.getName();
+    }
+
+    /**
+     * @return the declared type of the field
+     */
+    public Class<?> fieldType() {
+        return field.getType();
+    }
+
+    /**
+     * @return the selector, attribute, format and default value of the field
+     */
+    public FieldMapping mapping() {
+        return mapping;
+    }
+
+    /**
+     * @return how the field is populated
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return true if the field holds a list
+     */
+    public boolean isList() {
+        return kind == Kind.LIST || kind == Kind.LIST_OF_LINKS;
+    }
+
+    /**
+     * @return true if the items of the field are mapped when they are first read, which is the
+     * case for {@link LazyList}, {@link Iterable} and {@link Stream} fields
+     */
+    public boolean isLazy() {
+        return isList() && !field.getType().equals(List.class);
+    }
+
+    /**
+     * @return true if the field is a {@link Stream}
+     */
+    public boolean isStream() {
+        return field.getType().equals(Stream.class);
+    }
+
+    /**
+     * The class of the values of this field. For lists it is the item class, for links
+     * the class the link visits (null if it can't be resolved) and for the rest the field type.
+     *
+     * @return the value class
+     */
+    public Class<?> valueClass() {
+        return valueClass;
+    }
+
+    /**
+     * @return the value type, or null if values are instances of an annotated class
+     */
+    public ValueType valueType() {
+        return valueType;
+    }
+
+    /**
+     * @return true if the field has a CSS selector that can be matched on each element in a
+     * single pass over the document, without looking at other elements
+     */
+    public boolean hasSimpleSelector() {
+        return simpleSelector;
+    }
+
+    /**
+     * @return true if the field is an {@code int}, {@code float} or {@code boolean}
+     */
+    public boolean isPrimitive() {
+        return primitiveSetter != null;
+    }
+
+    /**
+     * Assigns a value to this field.
+     *
+     * @param target the instance being populated
+     * @param value  the value to assign
+     */
+    public void set(final Object target, final Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Assigns a value to an {@code int} field without boxing it.
+     *
+     * @param target the instance being populated
+     * @param value  the value to assign
+     */
+    public void setInt(final Object target, final int value) {
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Assigns a value to a {@code float} field without boxing it.
+     *
+     * @param target the instance being populated
+     * @param value  the value to assign
+     */
+    public void setFloat(final Object target, final float value) {
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Assigns a value to a {@code boolean} field without boxing it.
+     *
+     * @param target the instance being populated
+     * @param value  the value to assign
+     */
+    public void setBoolean(final Object target, final boolean value) {
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static RuntimeException rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new RuntimeException(t);
+    }
+
+    private static boolean isSimple(final String query) {
+        for (final String part : query.split(",", -1)) {
+            if (part.isBlank() || !SIMPLE_SELECTOR.matcher(part).matches()) return false;
+        }
+        return true;
+    }
+
+    private static boolean isContainer(final Class<?> c) {
+        return c.equals(List.class) || c.equals(LazyList.class) || c.equals(Iterable.class) || c.equals(Stream.class);
+    }
+
+    private static ValueType valueTypeOf(final Class<?> c) {
+        if (c.equals(List.class)) return ValueType.STRING;
+        return ValueType.of(c);
+    }
+
+    private static Type typeArgument(final Type genericType) {
+        return ((ParameterizedType) genericType).getActualTypeArguments()[0];
+    }
+
+    private static Class<?> rawClass(final Type type) {
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return (Class<?>) type;
+    }
+
+    private static Class<?> linkTarget(final Type linkType) {
+        if (!(linkType instanceof ParameterizedType)) return null;
+        final Type target = typeArgument(linkType);
+        return target instanceof Class<?> ? (Class<?>) target : null;
+    }
+}
@@ -0,0 +1,63 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * A read only list of the nodes matched by a selector, each one mapped the first time it is read.
+ * <p>
+ * Used for {@code LazyList}, {@code Iterable} and {@code Stream} fields, so consumers that stop
+ * after the first items don't pay for mapping the rest. The matched nodes, and so the document
+ * they belong to, are kept while the list is reachable. Mapping errors are thrown when the item
+ * is read. Like {@link java.util.ArrayList} it is not synchronized.
+ *
+ * @param <T> the item type
+ */
+public final class LazyList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final List<Element> nodes;
+    private final Function<Element, T> mapper;
+    private final Object[] items;
+    private final boolean[] mapped;
+
+    /**
+     * @param nodes  the matched nodes
+     * @param mapper maps a node to an item
+     */
+    public LazyList(final List<Element> nodes, final Function<Element, T> mapper) {
+        this.nodes = nodes;
+        this.mapper = mapper;
+        this.items = new Object[nodes.size()];
+        this.mapped = new boolean[nodes.size()];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        if (!mapped[index]) {
+            items[index] = mapper.apply(nodes.get(index));
+            mapped[index] = true;
+        }
+        return (T) items[index];
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return how many items were mapped so far
+     */
+    public int mappedCount() {
+        int count = 0;
+        for (final boolean m : mapped) {
+            if (m) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,231 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import webGrude.Webgrude;
+import webGrude.mapping.elements.FieldMapping;
+import webGrude.mapping.elements.Link;
+import webGrude.mapping.elements.WrongTypeForField;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+
+/**
+ * Selection and conversion routines shared by {@link Webgrude} and the generated {@link PageMapper}s.
+ * <p>
+ * Every value conversion throws {@link WrongTypeForField} when the node contents can't be
+ * converted, and single element selections throw {@link TooManyResultsException} when the
+ * selector matches more than one element.
+ */
+public final class MapperSupport {
+
+    private MapperSupport() {
+    }
+
+    /**
+     * Selects all the nodes matching a field selector among the descendants of the scope. The
+     * scope is the document for pages and the selected element for nested classes and list
+     * items, selectors are evaluated in place without moving or copying nodes.
+     *
+     * @param scope        the element to select from
+     * @param fieldMapping the field mapping with the CSS or XPath selector
+     * @return the matched elements
+     */
+    public static Elements select(final Element scope, final FieldMapping fieldMapping) {
+        if (fieldMapping.useXpath()) {
+            return XPathSelection.select(scope, fieldMapping);
+        }
+        final Elements elements = scope.select(fieldMapping.evaluator());
+        // jsoup matches the scope too, and it comes first in document order.
+        // Elements.remove would also remove it from the document, so the rest is copied
+        if (!elements.isEmpty() && elements.get(0) == scope) {
+            return new Elements(elements.subList(1, elements.size()));
+        }
+        return elements;
+    }
+
+    /**
+     * Selects the single node matching a field selector.
+     *
+     * @param scope        the element to select from
+     * @param fieldMapping the field mapping with the CSS or XPath selector
+     * @return the matched element or null if nothing matched
+     * @throws TooManyResultsException if more than one element matched
+     */
+    public static Element selectOne(final Element scope, final FieldMapping fieldMapping) {
+        return single(select(scope, fieldMapping), fieldMapping);
+    }
+
+    /**
+     * Returns the single node selected for a field.
+     *
+     * @param elements     the nodes selected for the field
+     * @param fieldMapping the field mapping
+     * @return the selected element or null if nothing was selected
+     * @throws TooManyResultsException if more than one element was selected
+     */
+    public static Element single(final Elements elements, final FieldMapping fieldMapping) {
+        final int size = elements.size();
+        if (size > 1) {
+            throw new TooManyResultsException(fieldMapping.value(), size, elements);
+        }
+        return size == 0 ? null : elements.first();
+    }
+
+    /**
+     * Maps the nodes of a list field. Lists with at least as many nodes as the mapper
+     * {@link Webgrude#parallelListThreshold() parallel list threshold} are mapped on its fork/join
+     * pool, the rest one node after the other. Either way the items keep the node order and the
+     * exception of the first failed node is thrown.
+     *
+     * @param webgrude the mapper
+     * @param nodes    the selected nodes
+     * @param mapper   maps a node to an item
+     * @param <T>      the item type
+     * @return the mapped items
+     */
+    public static <T> List<T> list(
+            final Webgrude webgrude,
+            final List<Element> nodes,
+            final Function<Element, T> mapper
+    ) {
+        final ForkJoinPool pool = webgrude.parallelListPool();
+        final int threshold = webgrude.parallelListThreshold();
+        if (pool != null && nodes.size() >= threshold) {
+            return ParallelItems.map(pool, threshold, nodes, mapper);
+        }
+        final ArrayList<T> items = new ArrayList<>(nodes.size());
+        for (final Element node : nodes) {
+            items.add(mapper.apply(node));
+        }
+        return items;
+    }
+
+    /**
+     * Creates a link to be visited later. The link keeps the node only if the mapper
+     * {@link Webgrude#keepsLinkElements() keeps link elements}.
+     *
+     * @param webgrude     the mapper used when the link is visited
+     * @param node         the element with the href attribute
+     * @param visitingType the class the visited page is mapped to
+     * @param baseUrl      base URL the link href is resolved against
+     * @param <T>          the visited page type
+     * @return a new link
+     */
+    public static <T> Link<T> link(
+            final Webgrude webgrude,
+            final Element node,
+            final Class<T> visitingType,
+            final BaseUrl baseUrl
+    ) {
+        if (webgrude.keepsLinkElements()) {
+            return new Link<>(webgrude, node, visitingType, baseUrl);
+        }
+        return new Link<>(webgrude, node.attr("href"), node.text(), visitingType, baseUrl);
+    }
+
+    /**
+     * Extracts the raw value of a node: its text, an attribute, its html or outer html, narrowed
+     * by the field format regex when it has one.
+     *
+     * @param node         the selected node
+     * @param fieldMapping the field mapping
+     * @return the value
+     */
+    public static String stringValue(final Element node, final FieldMapping fieldMapping) {
+        final String value = rawValue(node, fieldMapping);
+        final String format = fieldMapping.format();
+        if (format == null || format.isEmpty()) {
+            return value;
+        }
+        try {
+            final Matcher matcher = fieldMapping.pattern().matcher(value);
+            if (matcher.find()) {
+                final String group = matcher.group(1);
+                return group.isEmpty() ? fieldMapping.defValue() : group;
+            }
+            return fieldMapping.defValue();
+        } catch (final RuntimeException e) {
+            throw new WrongTypeForField(node, fieldMapping.attr(), String.class, e);
+        }
+    }
+
+    /**
+     * Converts a node to an int.
+     *
+     * @param node         the selected node
+     * @param fieldMapping the field mapping
+     * @return the value
+     */
+    public static int intValue(final Element node, final FieldMapping fieldMapping) {
+        final String value = stringValue(node, fieldMapping);
+        try {
+            return Integer.parseInt(value);
+        } catch (final Exception e) {
+            throw new WrongTypeForField(node, fieldMapping.attr(), Integer.class, e);
+        }
+    }
+
+    /**
+     * Converts a node to a float, parsed with the field locale.
+     *
+     * @param node         the selected node
+     * @param fieldMapping the field mapping
+     * @return the value
+     */
+    public static float floatValue(final Element node, final FieldMapping fieldMapping) {
+        final String value = stringValue(node, fieldMapping);
+        try {
+            return fieldMapping.numberFormat().parse(value).floatValue();
+        } catch (final Exception e) {
+            throw new WrongTypeForField(node, fieldMapping.attr(), Float.class, e);
+        }
+    }
+
+    /**
+     * Converts a node to a boolean.
+     *
+     * @param node         the selected node
+     * @param fieldMapping the field mapping
+     * @return the value
+     */
+    public static boolean booleanValue(final Element node, final FieldMapping fieldMapping) {
+        return Boolean.parseBoolean(stringValue(node, fieldMapping));
+    }
+
+    /**
+     * Converts a node to a date, parsed by a {@link java.text.SimpleDateFormat} with the field
+     * format and locale.
+     *
+     * @param node         the selected node
+     * @param fieldMapping the field mapping
+     * @return the value
+     */
+    public static Date dateValue(final Element node, final FieldMapping fieldMapping) {
+        final String value = rawValue(node, fieldMapping);
+        try {
+            return fieldMapping.dateFormat().parse(value);
+        } catch (final ParseException | RuntimeException e) {
+            throw new WrongTypeForField(node, fieldMapping.attr(), Date.class, e);
+        }
+    }
+
+    private static String rawValue(final Element node, final FieldMapping fieldMapping) {
+        final String attribute = fieldMapping.attr();
+        if (attribute == null || attribute.isEmpty()) {
+            return node.text();
+        }
+        if (attribute.equals("html")) {
+            return node.html();
+        }
+        if (attribute.equals("outerHtml")) {
+            return node.outerHtml();
+        }
+        return node.attr(attribute);
+    }
+}
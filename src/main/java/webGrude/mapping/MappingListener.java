@@ -0,0 +1,60 @@
+package webGrude.mapping;
+
+import webGrude.Webgrude;
+
+/**
+ * Receives the steps of mapping each field, for debug output or profiling.
+ * <p>
+ * Without a listener Webgrude doesn't build any event, so mapping pays nothing for it. With a
+ * listener every class is mapped by reflection, generated mappers don't send events. Nested
+ * classes and list items send the events of their own fields between the start and the end of
+ * the field holding them. Listeners of a {@link Webgrude} mapping lists in parallel or many
+ * documents at once are called from many threads.
+ *
+ * @see Webgrude.Builder#mappingListener(MappingListener)
+ */
+public interface MappingListener {
+
+    /**
+     * The listener that ignores every event, the default.
+     */
+    MappingListener NONE = new MappingListener() {
+    };
+
+    /**
+     * A field is about to be mapped.
+     *
+     * @param field the field
+     */
+    default void fieldStarted(final FieldPlan field) {
+    }
+
+    /**
+     * The selector of a field was evaluated.
+     *
+     * @param field the field
+     * @param count the number of selected nodes
+     */
+    default void fieldSelected(final FieldPlan field, final int count) {
+    }
+
+    /**
+     * A value is about to be set on a field. Fields that selected nothing are left unset and
+     * don't get this event. Lazy lists and streams are passed as they are, without mapping
+     * their items.
+     *
+     * @param field the field
+     * @param value the converted value, boxed for primitive fields
+     */
+    default void fieldConverted(final FieldPlan field, final Object value) {
+    }
+
+    /**
+     * A field was mapped, or mapping it threw.
+     *
+     * @param field the field
+     * @param nanos the time spent mapping the field, including its nested classes
+     */
+    default void fieldEnded(final FieldPlan field, final long nanos) {
+    }
+}
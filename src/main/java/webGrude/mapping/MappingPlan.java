@@ -0,0 +1,217 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import webGrude.mapping.annotations.AfterPageLoad;
+import webGrude.mapping.annotations.XML;
+import webGrude.mapping.elements.FieldMapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Everything Webgrude needs to know about a class to map documents onto it.
+ * <p>
+ * The reflective work (finding annotated fields, resolving their generic types, the no
+ * arguments constructor and the {@literal @}AfterPageLoad methods) is done once per class
+ * and cached, so mapping a document only selects nodes and assigns values. The constructor
+ * and field setters are bound as {@link MethodHandle}s.
+ *
+ * @param <T> the mapped class
+ */
+public final class MappingPlan<T> {
+
+    private static final ClassValue<MappingPlan<?>> PLANS = new ClassValue<>() {
+        @Override
+        protected MappingPlan<?> computeValue(final Class<?> type) {
+            return new MappingPlan<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final List<FieldPlan> fields;
+    private final List<Method> afterPageLoadMethods;
+    private final boolean xml;
+    private final int[] singlePassFields;
+    private volatile Boolean reusable;
+
+    private MappingPlan(final Class<T> type) {
+        this.type = type;
+        this.constructor = findConstructor(type);
+        this.xml = type.getAnnotation(XML.class) != null;
+
+        final List<FieldPlan> fieldPlans = new ArrayList<>();
+        for (final Field field : type.getDeclaredFields()) {
+            final Optional<FieldMapping> fieldMapping = FieldMapping.from(field);
+            fieldMapping.ifPresent(mapping -> fieldPlans.add(new FieldPlan(field, mapping)));
+        }
+        this.fields = Collections.unmodifiableList(fieldPlans);
+        this.singlePassFields = fieldPlans.stream()
+                .filter(FieldPlan::hasSimpleSelector)
+                .mapToInt(fieldPlans::indexOf)
+                .toArray();
+
+        final List<Method> methods = new ArrayList<>();
+        for (final Method method : type.getDeclaredMethods()) {
+            if (method.getAnnotation(AfterPageLoad.class) != null) {
+                method.setAccessible(true);
+                methods.add(method);
+            }
+        }
+        this.afterPageLoadMethods = Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Returns the plan for a class, compiling it on first use.
+     *
+     * @param type the class to map
+     * @param <T>  the class type
+     * @return the cached plan for the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MappingPlan<T> of(final Class<T> type) {
+        return (MappingPlan<T>) PLANS.get(type);
+    }
+
+    /**
+     * @return the mapped class
+     */
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * @return the annotated fields, in declaration order
+     */
+    public List<FieldPlan> fields() {
+        return fields;
+    }
+
+    /**
+     * @return the methods annotated with {@literal @}AfterPageLoad
+     */
+    public List<Method> afterPageLoadMethods() {
+        return afterPageLoadMethods;
+    }
+
+    /**
+     * @return true if the class is annotated with {@literal @}XML
+     */
+    public boolean isXml() {
+        return xml;
+    }
+
+    /**
+     * Tells if a mapped instance can be handed out more than once, by a cache. It can't if the
+     * class, or a class nested in it, has a {@link java.util.stream.Stream} field, since a
+     * stream can only be consumed once.
+     *
+     * @return true if no field of the class or of its nested classes is a stream
+     */
+    public boolean isReusable() {
+        Boolean result = reusable;
+        if (result == null) {
+            result = !hasStream(this, new HashSet<>());
+            reusable = result;
+        }
+        return result;
+    }
+
+    private static boolean hasStream(final MappingPlan<?> plan, final Set<Class<?>> visited) {
+        if (!visited.add(plan.type)) {
+            return false;
+        }
+        for (final FieldPlan field : plan.fields) {
+            if (field.isStream()) {
+                return true;
+            }
+            final boolean nested = field.kind() == FieldPlan.Kind.NESTED
+                    || field.kind() == FieldPlan.Kind.LIST && field.valueType() == null;
+            if (nested && hasStream(of(field.valueClass()), visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects the nodes of every field with a {@link FieldPlan#hasSimpleSelector() simple selector}
+     * in a single pass over the scope, instead of one pass per field. The result is the same as
+     * selecting each field on its own.
+     *
+     * @param scope the element to select from
+     * @return the nodes of each field, by field index, null for the fields that must be selected
+     * on their own. Null if fewer than two fields can be selected in one pass.
+     */
+    public Elements[] selectInOnePass(final Element scope) {
+        if (singlePassFields.length < 2) {
+            return null;
+        }
+        final Elements[] selected = new Elements[fields.size()];
+        final Evaluator[] evaluators = new Evaluator[singlePassFields.length];
+        for (int i = 0; i < singlePassFields.length; i++) {
+            selected[singlePassFields[i]] = new Elements();
+            evaluators[i] = fields.get(singlePassFields[i]).mapping().evaluator();
+        }
+        NodeTraversor.traverse((node, depth) -> {
+            if (node == scope || !(node instanceof Element)) return;
+            final Element element = (Element) node;
+            for (int i = 0; i < evaluators.length; i++) {
+                if (evaluators[i].matches(scope, element)) {
+                    selected[singlePassFields[i]].add(element);
+                }
+            }
+        }, scope);
+        return selected;
+    }
+
+    /**
+     * Creates a new empty instance of the mapped class.
+     *
+     * @return a new instance
+     * @throws InstantiationException    if the class is abstract
+     * @throws IllegalAccessException    if the constructor can't be accessed
+     * @throws InvocationTargetException if the constructor throws
+     */
+    public T newInstance() throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            throw new InstantiationException(type.getName());
+        }
+        if (constructor == null) {
+            throw new RuntimeException("If your class is an inner class, perhaps you should declare " +
+                    "'public static class' instead of 'public class'", new NoSuchMethodException(type.getName() + ".<init>()"));
+        }
+        try {
+            return type.cast(constructor.invokeExact());
+        } catch (final Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    private static MethodHandle findConstructor(final Class<?> type) {
+        if (Modifier.isAbstract(type.getModifiers())) return null;
+        try {
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
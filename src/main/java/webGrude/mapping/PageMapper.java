@@ -0,0 +1,58 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+import webGrude.Webgrude;
+
+import java.util.ServiceLoader;
+
+/**
+ * A mapper for a single annotated class, generated at compile time.
+ * <p>
+ * The optional webGrude-processor annotation processor generates one implementation for each
+ * class with {@literal @}Selector or {@literal @}XPath fields and registers it as a
+ * {@link ServiceLoader} provider. When a mapper exists for a class, {@link Webgrude#map(String, Class, String)}
+ * uses it instead of reflection.
+ *
+ * @param <T> the mapped class
+ */
+public interface PageMapper<T> {
+
+    /**
+     * @return the class this mapper populates
+     */
+    Class<T> type();
+
+    /**
+     * @return true if the class is annotated with {@literal @}XML
+     */
+    boolean isXml();
+
+    /**
+     * Creates an instance of the mapped class and populates its annotated fields.
+     *
+     * @param scope    the parsed document or the element to map from
+     * @param baseUrl  base URL used to resolve relative links
+     * @param webgrude the mapper links use when they are visited
+     * @return the populated instance
+     */
+    T map(Element scope, BaseUrl baseUrl, Webgrude webgrude);
+
+    /**
+     * Calls the methods annotated with {@literal @}AfterPageLoad.
+     *
+     * @param instance the populated instance
+     */
+    void afterPageLoad(T instance);
+
+    /**
+     * Finds the generated mapper for a class.
+     *
+     * @param type the mapped class
+     * @param <T>  the mapped class type
+     * @return the generated mapper or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static <T> PageMapper<T> forType(final Class<T> type) {
+        return (PageMapper<T>) PageMappers.MAPPERS.get(type);
+    }
+}
@@ -0,0 +1,43 @@
+package webGrude.mapping;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Loads the registered {@link PageMapper}s the first time one is looked up.
+ * <p>
+ * A provider that can't be loaded, like the mapper of a class that was renamed or deleted or a
+ * mapper generated for another version, is skipped with a warning and its class is mapped by
+ * reflection.
+ */
+final class PageMappers {
+
+    private static final System.Logger LOGGER = System.getLogger(PageMappers.class.getName());
+
+    static final Map<Class<?>, PageMapper<?>> MAPPERS = load();
+
+    private PageMappers() {
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<?>, PageMapper<?>> load() {
+        final Map<Class<?>, PageMapper<?>> mappers = new HashMap<>();
+        final Iterator<PageMapper> providers = ServiceLoader.load(PageMapper.class, PageMapper.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                final PageMapper<?> mapper = providers.next();
+                mappers.put(mapper.type(), mapper);
+            } catch (final ServiceConfigurationError | LinkageError e) {
+                // The iterator moves on to the next provider after an error
+                LOGGER.log(System.Logger.Level.WARNING, "Skipping a page mapper that can't be loaded", e);
+            }
+        }
+        return mappers;
+    }
+}
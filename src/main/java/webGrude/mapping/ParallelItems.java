@@ -0,0 +1,99 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Maps the nodes of a list on a {@link ForkJoinPool}, splitting them in halves until a range
+ * has no more nodes than the threshold.
+ * <p>
+ * Items keep the node order. If items fail, the exception of the first failed item is thrown as
+ * it is, as if the items were mapped one after the other, and items after it are skipped.
+ */
+@SuppressWarnings("serial") // Tasks are never serialized
+final class ParallelItems<T> extends RecursiveAction {
+
+    private final List<Element> nodes;
+    private final Function<Element, T> mapper;
+    private final Object[] items;
+    private final int threshold;
+    private final Failure failure;
+    private final int from;
+    private final int to;
+
+    private ParallelItems(
+            final List<Element> nodes,
+            final Function<Element, T> mapper,
+            final Object[] items,
+            final int threshold,
+            final Failure failure,
+            final int from,
+            final int to
+    ) {
+        this.nodes = nodes;
+        this.mapper = mapper;
+        this.items = items;
+        this.threshold = threshold;
+        this.failure = failure;
+        this.from = from;
+        this.to = to;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> map(
+            final ForkJoinPool pool,
+            final int threshold,
+            final List<Element> nodes,
+            final Function<Element, T> mapper
+    ) {
+        final Object[] items = new Object[nodes.size()];
+        final Failure failure = new Failure();
+        pool.invoke(new ParallelItems<>(nodes, mapper, items, Math.max(1, threshold), failure, 0, items.length));
+        if (failure.exception != null) {
+            throw failure.exception;
+        }
+        return new ArrayList<>((List<T>) Arrays.asList(items));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= threshold) {
+            for (int i = from; i < to && !failure.before(i); i++) {
+                try {
+                    items[i] = mapper.apply(nodes.get(i));
+                } catch (final RuntimeException e) {
+                    failure.offer(i, e);
+                    return;
+                }
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        invokeAll(
+                new ParallelItems<>(nodes, mapper, items, threshold, failure, from, middle),
+                new ParallelItems<>(nodes, mapper, items, threshold, failure, middle, to)
+        );
+    }
+
+    private static final class Failure {
+        private volatile int index = Integer.MAX_VALUE;
+        private RuntimeException exception;
+
+        boolean before(final int i) {
+            return index < i;
+        }
+
+        synchronized void offer(final int i, final RuntimeException e) {
+            if (i < index) {
+                index = i;
+                exception = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package webGrude.mapping;
+
+import org.jsoup.nodes.Element;
+import webGrude.mapping.elements.Link;
+
+import java.util.Date;
+
+/**
+ * The value types Webgrude knows how to convert a selected node into.
+ * <p>
+ * Resolved once per field when its {@link MappingPlan} is compiled, so the conversion
+ * does not need to compare classes for every mapped value.
+ */
+public enum ValueType {
+    /** Text, attribute or html of the node. */
+    STRING,
+    /** {@link Integer} or {@code int}. */
+    INTEGER,
+    /** {@link Float} or {@code float}. */
+    FLOAT,
+    /** {@link Boolean} or {@code boolean}. */
+    BOOLEAN,
+    /** {@link Date} parsed with the field format. */
+    DATE,
+    /** The selected {@link Element} itself. */
+    ELEMENT,
+    /** A {@link Link} to another page. */
+    LINK;
+
+    /**
+     * Resolves the value type for a class.
+     *
+     * @param c the class to resolve
+     * @return the value type, or null if the class is not directly mappable
+     */
+    public static ValueType of(final Class<?> c) {
+        if (c.equals(String.class)) return STRING;
+        if (c.equals(Integer.class) || c.equals(int.class)) return INTEGER;
+        if (c.equals(Float.class) || c.equals(float.class)) return FLOAT;
+        if (c.equals(Boolean.class) || c.equals(boolean.class)) return BOOLEAN;
+        if (c.equals(Date.class)) return DATE;
+        if (c.equals(Element.class)) return ELEMENT;
+        if (c.equals(Link.class)) return LINK;
+        return null;
+    }
+}
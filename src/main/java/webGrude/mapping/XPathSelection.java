@@ -0,0 +1,104 @@
+package webGrude.mapping;
+
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector.SelectorParseException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import webGrude.mapping.elements.FieldMapping;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates compiled XPath selectors on the W3C copy of a document, from the node copied from
+ * the scope.
+ * <p>
+ * Like jsoup, the whole owner document is converted, or the scope alone if it has no owner
+ * document. The conversion is kept in the user data of the converted element and reused by
+ * every XPath field selected from it or from any element in it, so the document must not be
+ * modified once XPath fields were mapped from it.
+ */
+final class XPathSelection {
+
+    private static final String W3C_DOCUMENT = "webgrude.w3cDocument";
+    private static final W3CDom SOURCE_NODES = new W3CDom();
+
+    private XPathSelection() {
+    }
+
+    static Elements select(final Element scope, final FieldMapping fieldMapping) {
+        final Element converted = scope.ownerDocument() != null ? scope.ownerDocument() : scope;
+        // Neither jsoup attributes nor the W3C DOM can be used by many threads at once
+        synchronized (converted) {
+            Conversion conversion = (Conversion) converted.attributes().userData(W3C_DOCUMENT);
+            if (conversion == null) {
+                conversion = new Conversion(converted);
+                converted.attributes().userData(W3C_DOCUMENT, conversion);
+            }
+            try {
+                final NodeList nodes = (NodeList) fieldMapping.xpathExpression()
+                        .evaluate(conversion.nodeOf(scope), XPathConstants.NODESET);
+                return new Elements(SOURCE_NODES.sourceNodes(nodes, Element.class));
+            } catch (final XPathExpressionException e) {
+                throw new SelectorParseException(e, "Could not evaluate XPath query [%s]: %s",
+                        fieldMapping.value(), e.getMessage());
+            }
+        }
+    }
+
+    private static final class Conversion {
+        private final Element root;
+        private final Document document;
+        private Map<Element, Node> nodes;
+
+        Conversion(final Element root) {
+            this.root = root;
+            this.document = new W3CDom().namespaceAware(false).fromJsoup(root);
+        }
+
+        /**
+         * @return the W3C node copied from a jsoup element, the W3C document for the jsoup document
+         */
+        Node nodeOf(final Element element) {
+            if (element == root && root instanceof org.jsoup.nodes.Document) {
+                return document;
+            }
+            if (nodes == null) {
+                // Indexed once, on the first scope below the root, so nested scopes are found in constant time
+                nodes = new IdentityHashMap<>();
+                index();
+            }
+            final Node node = nodes.get(element);
+            if (node == null) {
+                throw new IllegalStateException("The element " + element.tagName()
+                        + " was added to the document after its XPath fields were first mapped");
+            }
+            return node;
+        }
+
+        private void index() {
+            Node node = document.getDocumentElement();
+            while (node != null) {
+                final Object source = node.getUserData(W3CDom.SourceProperty);
+                if (source instanceof Element) {
+                    nodes.put((Element) source, node);
+                }
+                if (node.getFirstChild() != null) {
+                    node = node.getFirstChild();
+                    continue;
+                }
+                while (node != null && node.getNextSibling() == null) {
+                    node = node.getParentNode() == document ? null : node.getParentNode();
+                }
+                if (node != null) {
+                    node = node.getNextSibling();
+                }
+            }
+        }
+    }
+}
@@ -72,4 +72,13 @@ public @interface Page {
      * @return the url
      */
     String value() default "";
+
+    /**
+     * Stops parsing the page once the first node for every field that is not a list was read.
+     * Useful when the data is at the top of large pages. List fields only get the nodes read
+     * until then, fields with more than one match are only reported if the matches were read,
+     * and pages with XPath fields or an unknown charset are still fully parsed.
+     * @return true to parse only the start of the page
+     */
+    boolean partial() default false;
 }
\ No newline at end of file
@@ -1,15 +1,38 @@
 package webGrude.mapping.elements;
 
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector.SelectorParseException;
 import webGrude.mapping.annotations.Selector;
 import webGrude.mapping.annotations.XPath;
 
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
 import java.lang.reflect.AnnotatedElement;
+import java.text.DateFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 /**
  * Represents a mapping configuration for a field extracted from HTML or XML using annotations.
+ * <p>
+ * The CSS selector, the format regex and the locale are resolved once when the mapping is created
+ * and shared by every thread mapping the field. Date and number formats and XPath expressions are
+ * not thread safe and are created once per thread. Without a locale, the default locale (and for
+ * dates the default time zone) is read on each conversion, and the formats of the thread are
+ * created again when it changes. A selector, format or locale that can't be resolved only fails
+ * when it is used.
  */
 public class FieldMapping {
+
+    private static final ThreadLocal<XPathFactory> XPATH_FACTORY = ThreadLocal.withInitial(XPathFactory::newInstance);
+
     private final String value;
     private final String attr;
     private final String format;
@@ -17,6 +40,17 @@ public class FieldMapping {
     private final String defValue;
     private final boolean isXpath;
 
+    private final Locale resolvedLocale;
+    private final RuntimeException localeError;
+    private final Pattern pattern;
+    private final RuntimeException patternError;
+    private final ThreadLocal<Localized<DateFormat>> dateFormat = new ThreadLocal<>();
+    private final RuntimeException dateFormatError;
+    private final ThreadLocal<Localized<NumberFormat>> numberFormat = new ThreadLocal<>();
+    private final Evaluator evaluator;
+    private final RuntimeException selectorError;
+    private final ThreadLocal<XPathExpression> xpathExpression;
+
     /**
      * Constructs a FieldMapping instance.
      *
@@ -34,6 +68,52 @@ public class FieldMapping {
         this.locale = locale;
         this.defValue = defValue;
         this.isXpath = isXpath;
+
+        Locale loc = null;
+        RuntimeException error = null;
+        try {
+            loc = parseLocale(locale);
+        } catch (final RuntimeException e) {
+            error = e;
+        }
+        this.resolvedLocale = loc;
+        this.localeError = error;
+
+        // The format is a regex for most types and a date pattern for dates, so both are tried
+        Pattern compiled = null;
+        error = null;
+        if (format != null && !format.isEmpty()) {
+            try {
+                compiled = Pattern.compile(format);
+            } catch (final RuntimeException e) {
+                error = e;
+            }
+        }
+        this.pattern = compiled;
+        this.patternError = error;
+
+        error = null;
+        if (format != null && !format.isEmpty() && localeError == null) {
+            try {
+                new SimpleDateFormat(format, resolvedLocale());
+            } catch (final RuntimeException e) {
+                error = e;
+            }
+        }
+        this.dateFormatError = error;
+
+        Evaluator parsed = null;
+        error = null;
+        if (!isXpath) {
+            try {
+                parsed = QueryParser.parse(value);
+            } catch (final RuntimeException e) {
+                error = e;
+            }
+        }
+        this.evaluator = parsed;
+        this.selectorError = error;
+        this.xpathExpression = isXpath ? ThreadLocal.withInitial(this::compileXpath) : null;
     }
 
     /**
@@ -144,4 +224,120 @@ public class FieldMapping {
     public boolean useXpath() {
         return isXpath;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the locale used for parsing, the current default locale if none was given
+     * @throws java.util.IllformedLocaleException if the locale string is not valid
+     */
+    public Locale resolvedLocale() {
+        if (localeError != null) throw localeError;
+        return resolvedLocale == null ? Locale.getDefault() : resolvedLocale;
+    }
+
+    /**
+     * @return the compiled format regex, or null if there is no format
+     * @throws java.util.regex.PatternSyntaxException if the format is not a valid regex
+     */
+    public Pattern pattern() {
+        if (patternError != null) throw patternError;
+        return pattern;
+    }
+
+    /**
+     * @return the {@link SimpleDateFormat} of the format and locale owned by the calling thread,
+     * or null if there is no format
+     * @throws IllegalArgumentException if the format is not a valid date pattern
+     */
+    public DateFormat dateFormat() {
+        if (localeError != null) throw localeError;
+        if (dateFormatError != null) throw dateFormatError;
+        if (format == null || format.isEmpty()) return null;
+        return localized(dateFormat, TimeZone.getDefault(), loc -> new SimpleDateFormat(format, loc));
+    }
+
+    /**
+     * @return the parsed CSS selector, shared by every thread
+     * @throws SelectorParseException if the selector is not valid
+     * @throws IllegalStateException  if the mapping is an XPath
+     */
+    public Evaluator evaluator() {
+        if (isXpath) throw new IllegalStateException(value + " is an XPath");
+        if (selectorError != null) throw selectorError;
+        return evaluator;
+    }
+
+    /**
+     * {@link XPathExpression} is not thread safe, so each thread compiles the expression once.
+     * It is evaluated from the scope the field is selected from, the document for a page and the
+     * selected element for nested classes and list items, so the value is prefixed with {@code .}.
+     *
+     * @return the compiled XPath, owned by the calling thread
+     * @throws SelectorParseException if the XPath is not valid
+     * @throws IllegalStateException  if the mapping is a CSS selector
+     */
+    public XPathExpression xpathExpression() {
+        if (!isXpath) throw new IllegalStateException(value + " is a CSS selector");
+        return xpathExpression.get();
+    }
+
+    private XPathExpression compileXpath() {
+        final String xpath = "." + value;
+        try {
+            return XPATH_FACTORY.get().newXPath().compile(xpath);
+        } catch (final XPathExpressionException e) {
+            throw new SelectorParseException(e, "Could not evaluate XPath query [%s]: %s", xpath, e.getMessage());
+        }
+    }
+
+    /**
+     * {@link NumberFormat} is not thread safe, so each thread gets its own instance, created once
+     * for each locale.
+     *
+     * @return the number format for the locale, owned by the calling thread
+     */
+    public NumberFormat numberFormat() {
+        return localized(numberFormat, null, NumberFormat::getInstance);
+    }
+
+    private <F> F localized(final ThreadLocal<Localized<F>> formats, final TimeZone zone, final Function<Locale, F> factory) {
+        final Locale loc = resolvedLocale();
+        Localized<F> localized = formats.get();
+        if (localized == null || !localized.locale.equals(loc) || zone != null && !zone.equals(localized.zone)) {
+            // Date formats are created in the default time zone
+            localized = new Localized<>(loc, zone, factory.apply(loc));
+            formats.set(localized);
+        }
+        return localized.format;
+    }
+
+    /**
+     * @return the parsed locale, or null to use the default locale
+     */
+    private static Locale parseLocale(final String locale) {
+        if (locale == null || locale.isEmpty()) {
+            return null;
+        }
+        if (locale.contains("_")) {
+            final String[] parts = locale.split("_");
+            return new Locale.Builder()
+                    .setLanguage(parts[0])
+                    .setRegion(parts[1])
+                    .build();
+        }
+        return new Locale.Builder()
+                .setLanguage(locale)
+                .build();
+    }
+
+    private static final class Localized<F> {
+        private final Locale locale;
+        private final TimeZone zone;
+        private final F format;
+
+        private Localized(final Locale locale, final TimeZone zone, final F format) {
+            this.locale = locale;
+            this.zone = zone;
+            this.format = format;
+        }
+    }
+}
@@ -5,6 +5,15 @@ import org.jsoup.nodes.Element;
 import webGrude.OkHttpBrowser;
 import webGrude.http.LinkVisitor;
 import webGrude.Webgrude;
+import webGrude.mapping.BaseUrl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * A Link for a Page that can be visited.
@@ -22,6 +31,8 @@ import webGrude.Webgrude;
  * contain a link that can be visited:
  * <p>
  * <i>ExamplePage examplePage = linkToExample.visit();</i>
+ * <p>
+ * A list of links can be visited concurrently with {@link #visitAll(Collection, LinkVisitor, int)}.
  *
  * @param <T> The class populated by the link.
  * @see OkHttpBrowser
@@ -32,11 +43,13 @@ public class Link<T> {
 
     private final Class<T> type;
     private final Element hrefElement;
-    private final String baseUrl;
+    private final String linkUrl;
+    private final String text;
     private final Webgrude pageToClassMapper;
 
     /**
-     * Constructs a new Link instance.
+     * Constructs a new Link instance that keeps the href element, and with it the whole
+     * document the element belongs to.
      *
      * @param pageToClassMapper A Webgrude instance responsible for mapping HTML content to a Java class.
      * @param hrefElement       A Jsoup Element with an href attribute.
@@ -48,29 +61,79 @@ public class Link<T> {
             final Element hrefElement,
             final Class<T> visitingType,
             final String baseUrl
+    ) {
+        this(pageToClassMapper, hrefElement, visitingType, BaseUrl.of(baseUrl));
+    }
+
+    /**
+     * Constructs a new Link instance that keeps the href element, and with it the whole
+     * document the element belongs to.
+     *
+     * @param pageToClassMapper A Webgrude instance responsible for mapping HTML content to a Java class.
+     * @param hrefElement       A Jsoup Element with an href attribute.
+     * @param visitingType      The class type to be instantiated when visiting the link.
+     * @param baseUrl           The base URL of the page the link is on.
+     */
+    public Link(
+            final Webgrude pageToClassMapper,
+            final Element hrefElement,
+            final Class<T> visitingType,
+            final BaseUrl baseUrl
     ) {
         this.pageToClassMapper = pageToClassMapper;
         this.hrefElement = hrefElement;
         this.type = visitingType;
-        this.baseUrl = baseUrl;
+        this.linkUrl = baseUrl.resolve(hrefElement.attr("href"));
+        this.text = hrefElement.text();
+    }
+
+    /**
+     * Constructs a new Link instance from an href, without any element.
+     *
+     * @param pageToClassMapper A Webgrude instance responsible for mapping HTML content to a Java class.
+     * @param href              The href attribute value.
+     * @param text              The link text.
+     * @param visitingType      The class type to be instantiated when visiting the link.
+     * @param baseUrl           The base URL of the page the link is on.
+     */
+    public Link(
+            final Webgrude pageToClassMapper,
+            final String href,
+            final String text,
+            final Class<T> visitingType,
+            final BaseUrl baseUrl
+    ) {
+        this.pageToClassMapper = pageToClassMapper;
+        this.hrefElement = null;
+        this.type = visitingType;
+        this.linkUrl = baseUrl.resolve(href);
+        this.text = text;
     }
 
     /**
-     * Computes the absolute URL represented by the href element.
+     * Returns the absolute URL represented by the href element, resolved when the link was created.
      *
      * @return the full URL to visit.
      */
     public String getLinkUrl() {
-        final String href = this.hrefElement.attr("href");
-        String urlToVisit = href;
-        if (href.startsWith("/")) {
-            final String rootPage = this.baseUrl.replaceAll("(.*://.*?/).*", "$1");
-            urlToVisit = rootPage.substring(0, rootPage.length() - 1) + href;
-        }
-        if (href.startsWith(".")) {
-            urlToVisit = this.baseUrl + "/" + href;
-        }
-        return urlToVisit;
+        return linkUrl;
+    }
+
+    /**
+     * @return the text of the link element.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the element the link was mapped from. It is only kept when the link was mapped
+     * by a Webgrude built with {@link Webgrude.Builder#keepLinkElements(boolean)}.
+     *
+     * @return the href element, or null if it was not kept.
+     */
+    public Element getHrefElement() {
+        return hrefElement;
     }
 
     /**
@@ -80,11 +143,64 @@ public class Link<T> {
      * @return an instance of the visitingType class populated with data from the visited page.
      */
     public T visit(final LinkVisitor linkVisitor) {
-        final String linkUrl = this.getLinkUrl();
-        final boolean linkIsRelative = linkUrl.startsWith(".")
-                || linkUrl.startsWith("/")
-                || linkUrl.startsWith("?");
-        final String linkContents = linkVisitor.visitLink((linkIsRelative) ? baseUrl + linkUrl : linkUrl);
-        return pageToClassMapper.map(linkContents, type, baseUrl);
+        final String linkContents = linkVisitor.visitLink(linkUrl);
+        return pageToClassMapper.map(linkContents, type, linkUrl);
+    }
+
+    /**
+     * Visits many links concurrently, each page is mapped as soon as its contents arrive.
+     * <p>
+     * Visits run on virtual threads when the runtime has them, on a pool of platform threads
+     * otherwise. At most parallelism links are visited at the same time. If a visit fails, the
+     * visits still running are interrupted and the failure of the first link, in the collection
+     * order, is thrown.
+     *
+     * @param links       the links to visit
+     * @param linkVisitor a visitor capable of retrieving page contents from a URL, called from many threads.
+     * @param parallelism the maximum number of links visited at the same time
+     * @param <T>         the class populated by the links
+     * @return the mapped pages, in the same order as the links
+     */
+    public static <T> List<T> visitAll(
+            final Collection<Link<T>> links,
+            final LinkVisitor linkVisitor,
+            final int parallelism
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        if (links.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final Semaphore permits = new Semaphore(parallelism);
+        final ExecutorService executor = VisitExecutors.newExecutor(Math.min(parallelism, links.size()));
+        try {
+            final List<Future<T>> visits = new ArrayList<>(links.size());
+            for (final Link<T> link : links) {
+                visits.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return link.visit(linkVisitor);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            final List<T> pages = new ArrayList<>(visits.size());
+            for (final Future<T> visit : visits) {
+                pages.add(visit.get());
+            }
+            return pages;
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while visiting links", e);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 }
\ No newline at end of file
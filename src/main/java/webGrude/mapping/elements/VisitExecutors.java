@@ -0,0 +1,50 @@
+package webGrude.mapping.elements;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors links are visited on.
+ * <p>
+ * On a runtime with virtual threads every visit gets its own virtual thread, a blocked fetch
+ * then costs no platform thread. Older runtimes get a pool of daemon platform threads.
+ */
+final class VisitExecutors {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private VisitExecutors() {
+    }
+
+    /**
+     * @param threads the number of platform threads, if virtual threads are not available
+     * @return a new executor, to be shut down by the caller
+     */
+    static ExecutorService newExecutor(final int threads) {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (final ReflectiveOperationException e) {
+                // Falls back to platform threads
+            }
+        }
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "webgrude-visit-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    private static Method findVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
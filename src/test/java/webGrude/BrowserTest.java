@@ -3,15 +3,31 @@ package webGrude;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import webGrude.http.GetException;
 import webGrude.mappables.Foo;
 
+import okio.Buffer;
+
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BrowserTest {
 
@@ -52,6 +68,29 @@ public class BrowserTest {
         assertEquals("/x/bar/y/baz", recordedRequest.getPath());
     }
 
+    @Test
+    public void testLinksResolveAgainstTheFetchedUrl() {
+        final String port = Integer.toString(mockWebServer.getPort());
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setBody("<a href=\"../x\">up</a>"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(302)
+                .setHeader("Location", "/moved/deeper/page.html"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setBody("<a href=\"../x\">up</a>"));
+        okHttpBrowser.get(mockWebServer.url("/foo").toString(), Foo.class);
+
+        final PageWithParameterizedLinks opened = okHttpBrowser.get(PageWithParameterizedLinks.class, port, "v2");
+        final PageWithParameterizedLinks redirected = okHttpBrowser.get(PageWithParameterizedLinks.class, port, "old");
+
+        assertEquals("http://localhost:" + port + "/docs/x", opened.up.getLinkUrl());
+        assertEquals("http://localhost:" + port + "/moved/x", redirected.up.getLinkUrl());
+    }
+
     @Test
     public void testExecute() throws IOException {
         String url = mockWebServer.url("/foo").toString();
@@ -63,4 +102,226 @@ public class BrowserTest {
 
         assertEquals("Title", foo.someContent.title);
     }
+
+    @Test
+    public void testCharsetFromContentType() {
+        final String body = TestUtils.readTestResource("Foo.html").replace(">Title<", ">T\u00edtulo<");
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html; charset=ISO-8859-1")
+                .setBody(new Buffer().write(body.getBytes(StandardCharsets.ISO_8859_1))));
+        String url = mockWebServer.url("/foo").toString();
+
+        assertEquals("Title", okHttpBrowser.get(url, Foo.class).someContent.title);
+        assertEquals("T\u00edtulo", okHttpBrowser.get(url, Foo.class).someContent.title);
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        String url = mockWebServer.url("/foo").toString();
+
+        final Foo foo = okHttpBrowser.getAsync(url, Foo.class).get(10, TimeUnit.SECONDS);
+
+        assertEquals("Title", foo.someContent.title);
+    }
+
+    @Test
+    public void testExecuteAsyncUnsuccessfulResponse() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        String url = mockWebServer.url("/missing").toString();
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(url)
+                .build();
+        assertEquals("Title", okHttpBrowser.get(url, Foo.class).someContent.title);
+
+        final ExecutionException e = assertThrows(ExecutionException.class,
+                () -> okHttpBrowser.executeAsync(request, Foo.class).get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    public void testNotModifiedPageIsNotMappedAgain(@TempDir final File cacheDirectory) throws InterruptedException {
+        final OkHttpBrowser cachingBrowser = OkHttpBrowser.builder().cache(cacheDirectory, 1024 * 1024).build();
+        final String url = mockWebServer.url("/foo").toString();
+        assertEquals("Title", cachingBrowser.get(url, Foo.class).someContent.title);
+        final String body = TestUtils.readTestResource("Foo.html");
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setHeader("ETag", "\"v1\"")
+                .setHeader("Cache-Control", "no-cache")
+                .setBody(body));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(304)
+                .setHeader("ETag", "\"v1\""));
+
+        final Foo first = cachingBrowser.get(url, Foo.class);
+        final Foo second = cachingBrowser.get(url, Foo.class);
+
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testBrowsersShareConfiguredClient() {
+        final OkHttpBrowser configured = OkHttpBrowser.builder()
+                .connectionPool(2, Duration.ofSeconds(30))
+                .maxRequests(16)
+                .maxRequestsPerHost(8)
+                .protocols(Protocol.HTTP_1_1)
+                .readTimeout(Duration.ofSeconds(3))
+                .build();
+        final OkHttpBrowser sharing = OkHttpBrowser.builder().client(configured.client()).build();
+
+        assertEquals(8, configured.client().dispatcher().getMaxRequestsPerHost());
+        assertEquals(16, configured.client().dispatcher().getMaxRequests());
+        assertEquals(List.of(Protocol.HTTP_1_1), configured.client().protocols());
+        assertEquals(3000, configured.client().readTimeoutMillis());
+        assertSame(configured.client().connectionPool(), sharing.client().connectionPool());
+        assertSame(configured.client().dispatcher(), sharing.client().dispatcher());
+
+        String url = mockWebServer.url("/foo").toString();
+        assertEquals("Title", sharing.get(url, Foo.class).someContent.title);
+    }
+
+    @Test
+    public void testRetriesTemporaryErrors() {
+        final OkHttpBrowser retrying = OkHttpBrowser.builder()
+                .retry(new RetryPolicy(2, Duration.ofMillis(10), Duration.ofSeconds(2)))
+                .build();
+        String url = mockWebServer.url("/foo").toString();
+        assertEquals("Title", retrying.get(url, Foo.class).someContent.title);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setBody(TestUtils.readTestResource("Foo.html")));
+
+        final long start = System.nanoTime();
+        assertEquals("Title", retrying.get(url, Foo.class).someContent.title);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+        assertEquals(2, retrying.stats().retries());
+        assertEquals(2, retrying.stats().failures());
+        assertEquals(4, retrying.stats().requests());
+    }
+
+    @Test
+    public void testMappingCacheKeepsEachFetchedUrl() {
+        final MappingCache cache = new MappingCache(10);
+        final OkHttpBrowser caching = OkHttpBrowser.builder()
+                .webgrude(Webgrude.builder().mappingCache(cache).build())
+                .build();
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setResponseCode(200)
+                    .setHeader("Content-Type", "text/html")
+                    .setBody(TestUtils.readTestResource("Foo.html")));
+        }
+        final String first = mockWebServer.url("/first").toString();
+        final String second = mockWebServer.url("/second").toString();
+
+        final Foo firstPage = caching.get(first, Foo.class);
+        final Foo secondPage = caching.get(second, Foo.class);
+
+        assertEquals(2, cache.size());
+        assertSame(firstPage, caching.get(first, Foo.class));
+        assertSame(secondPage, caching.get(second, Foo.class));
+        assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    public void testCancelledCallIsNotRetried() throws InterruptedException {
+        final OkHttpBrowser retrying = OkHttpBrowser.builder()
+                .retry(new RetryPolicy(2, Duration.ofMillis(10), Duration.ofSeconds(2)))
+                .build();
+        String url = mockWebServer.url("/foo").toString();
+        assertEquals("Title", retrying.get(url, Foo.class).someContent.title);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+
+        final CompletableFuture<Foo> page = retrying.getAsync(url, Foo.class);
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+        // Cancelled while waiting for the Retry-After
+        TimeUnit.MILLISECONDS.sleep(300);
+        page.cancel(true);
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        assertEquals(0, retrying.stats().retries());
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testSlowRequestIsHedged() {
+        final OkHttpBrowser hedging = OkHttpBrowser.builder()
+                .hedgeAfter(Duration.ofMillis(200))
+                .build();
+        String url = mockWebServer.url("/foo").toString();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeadersDelay(2, TimeUnit.SECONDS)
+                .setBody("slow"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setBody(TestUtils.readTestResource("Foo.html")));
+        assertEquals("Title", hedging.get(url, Foo.class).someContent.title);
+
+        final long start = System.nanoTime();
+        assertTrue(hedging.getPage(url).contains("<h1>Title</h1>"));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        assertEquals(1, hedging.stats().hedges());
+        assertEquals(1, hedging.stats().hedgeWins());
+    }
+
+    @Test
+    public void testFastErrorDoesNotWinOverSlowerSuccess() {
+        final OkHttpBrowser hedging = OkHttpBrowser.builder()
+                .hedgeAfter(Duration.ofMillis(200))
+                .build();
+        String url = mockWebServer.url("/foo").toString();
+        assertEquals("Title", hedging.get(url, Foo.class).someContent.title);
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html")
+                .setHeadersDelay(600, TimeUnit.MILLISECONDS)
+                .setBody(TestUtils.readTestResource("Foo.html")));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+
+        assertEquals("Title", hedging.get(url, Foo.class).someContent.title);
+
+        assertEquals(1, hedging.stats().hedges());
+        assertEquals(0, hedging.stats().hedgeWins());
+        assertEquals(3, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    public void testMetricsAreRecordedPerStageClassAndHost() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        final OkHttpBrowser metered = OkHttpBrowser.builder()
+                .webgrude(Webgrude.builder().metrics(metrics).build())
+                .build();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        final String url = mockWebServer.url("/foo").toString();
+        final String host = mockWebServer.url("/").host();
+
+        assertEquals("Title", metered.get(url, Foo.class).someContent.title);
+        assertThrows(GetException.class, () -> metered.get(url, Foo.class));
+
+        assertEquals(2, metrics.histogram(Metrics.Stage.FETCH, Foo.class, host).count());
+        assertEquals(1, metrics.errors(Metrics.Stage.FETCH, Foo.class, host));
+        assertEquals(1, metrics.histogram(Metrics.Stage.READ, Foo.class, host).count());
+        assertEquals(TestUtils.readTestResource("Foo.html").getBytes(StandardCharsets.UTF_8).length,
+                metrics.bytes(Foo.class, host));
+        assertEquals(1, metrics.histogram(Metrics.Stage.PARSE, Foo.class, host).count());
+        assertEquals(1, metrics.histogram(Metrics.Stage.MAP, Foo.class, host).count());
+        assertTrue(metrics.histogram(Metrics.Stage.SELECT, Foo.SomeContent.class, host).count() >= 2);
+        assertTrue(metrics.histogram(Metrics.Stage.CONVERT, Foo.class, host).count() > 0);
+        assertEquals(0, metrics.errors(Metrics.Stage.MAP, Foo.class, host));
+    }
 }
@@ -0,0 +1,58 @@
+package webGrude;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesAreWithinTheBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(500_000, histogram.percentile(0.5).toNanos(), 500_000 * 0.04);
+        assertEquals(990_000, histogram.percentile(0.99).toNanos(), 990_000 * 0.04);
+        assertEquals(Duration.ofMillis(1), histogram.percentile(1));
+        assertEquals(Duration.ofMillis(1), histogram.max());
+        assertEquals(Duration.ofNanos(500_500), histogram.mean());
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.count());
+        assertNull(histogram.percentile(0.5));
+        assertEquals(Duration.ZERO, histogram.mean());
+        assertEquals(Duration.ZERO, histogram.max());
+    }
+
+    @Test
+    public void testNegativeDurationsAreRecordedAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.count());
+        assertEquals(Duration.ZERO, histogram.percentile(0.5));
+    }
+
+    @Test
+    public void testEveryValueFallsInTheBucketEndingAtOrAfterIt() {
+        long value = 0;
+        while (value < TimeUnit.HOURS.toNanos(1)) {
+            final int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.highestValue(index) >= value, "bucket of " + value);
+            assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < value, "bucket of " + value);
+            value = value < 128 ? value + 1 : value + value / 7;
+        }
+    }
+}
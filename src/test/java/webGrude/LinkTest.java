@@ -0,0 +1,96 @@
+package webGrude;
+
+import org.junit.jupiter.api.Test;
+import webGrude.mapping.BaseUrl;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.elements.Link;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LinkTest {
+
+    public static class Links {
+        @Selector("a") public List<Link<Links>> links;
+    }
+
+    @Test
+    public void testRfc3986Resolution() {
+        // Examples from RFC 3986, section 5.4
+        final BaseUrl base = BaseUrl.of("http://a/b/c/d;p?q");
+
+        assertEquals("g:h", base.resolve("g:h"));
+        assertEquals("http://a/b/c/g", base.resolve("g"));
+        assertEquals("http://a/b/c/g", base.resolve("./g"));
+        assertEquals("http://a/b/c/g/", base.resolve("g/"));
+        assertEquals("http://a/g", base.resolve("/g"));
+        assertEquals("http://g", base.resolve("//g"));
+        assertEquals("http://a/b/c/d;p?y", base.resolve("?y"));
+        assertEquals("http://a/b/c/g?y", base.resolve("g?y"));
+        assertEquals("http://a/b/c/d;p?q#s", base.resolve("#s"));
+        assertEquals("http://a/b/c/d;p?q", base.resolve(""));
+        assertEquals("http://a/b/c/", base.resolve("."));
+        assertEquals("http://a/b/", base.resolve(".."));
+        assertEquals("http://a/b/g", base.resolve("../g"));
+        assertEquals("http://a/g", base.resolve("../../g"));
+        assertEquals("http://a/g", base.resolve("../../../g"));
+        assertEquals("http://a/g", base.resolve("/./g"));
+    }
+
+    @Test
+    public void testBaseWithoutPath() {
+        final BaseUrl base = BaseUrl.of("https://example.com");
+
+        assertEquals("https://example.com/page", base.resolve("page"));
+        assertEquals("https://example.com?page=2", base.resolve("?page=2"));
+        assertEquals("https://cdn.example.com/a", base.resolve("//cdn.example.com/a"));
+    }
+
+    @Test
+    public void testNoBaseKeepsHref() {
+        assertEquals("page2", BaseUrl.of("").resolve("page2"));
+    }
+
+    @Test
+    public void testInvalidUrisAreResolvedLeniently() {
+        final BaseUrl base = BaseUrl.of("https://en.wikipedia.org/wiki/Main_Page");
+
+        assertEquals("https://en.wikipedia.org/wiki/Foo bar", base.resolve("/wiki/Foo bar"));
+        assertEquals("https://en.wikipedia.org/up?q=a|b", base.resolve("../up?q=a|b"));
+        assertEquals("https://en.wikipedia.org/wiki/page?q=%zz", base.resolve("page?q=%zz"));
+    }
+
+    @Test
+    public void testTemplateBaseStillResolves() {
+        final BaseUrl base = BaseUrl.of("https://example.com/search/{0}/results");
+
+        assertEquals("https://example.com/search/{0}/page2", base.resolve("page2"));
+        assertEquals("https://example.com/about", base.resolve("/about"));
+        assertEquals("example.com", base.host());
+    }
+
+    @Test
+    public void testBaseElementIsHonored() {
+        final String html = "<html><head><base href=\"/docs/\"></head><body>"
+                + "<a href=\"intro\">Intro</a><a href=\"../about\">About</a><a href=\"?p=2\">Next</a>"
+                + "</body></html>";
+
+        final Links page = new Webgrude().map(html, Links.class, "https://example.com/index.html");
+
+        assertEquals(
+                List.of("https://example.com/docs/intro", "https://example.com/about", "https://example.com/docs/?p=2"),
+                page.links.stream().map(Link::getLinkUrl).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void testVisitedPageIsMappedWithTheLinkUrl() {
+        final Links page = new Webgrude().map("<a href=\"/a/b\">b</a>", Links.class, "https://example.com/");
+
+        final Links visited = page.links.get(0).visit(href -> "<a href=\"c\">c</a>");
+
+        assertEquals("https://example.com/a/c", visited.links.get(0).getLinkUrl());
+    }
+}
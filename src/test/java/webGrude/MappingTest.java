@@ -1,15 +1,52 @@
 package webGrude;
 
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Selector;
 import org.junit.jupiter.api.Test;
+import webGrude.http.GetException;
+import webGrude.mapping.FieldPlan;
+import webGrude.mapping.LazyList;
+import webGrude.mapping.MappingListener;
+import webGrude.mapping.MappingPlan;
+import webGrude.mapping.PageMapper;
+import webGrude.mapping.elements.FieldMapping;
 import webGrude.mapping.TooManyResultsException;
+import webGrude.mapping.elements.Link;
 import webGrude.mapping.elements.WrongTypeForField;
+import webGrude.mappables.Dates;
 import webGrude.mappables.Foo;
+import webGrude.mappables.LazyFoo;
+import webGrude.mappables.PartialPage;
+import webGrude.mappables.Table;
 import webGrude.mappables.TooManyResultsError;
 import webGrude.mappables.WrongTypeError;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,10 +78,10 @@ public class MappingTest {
         assertEquals("linkToBeExtracted1", foo.linksWithHref.get(0));
         assertEquals("linkToBeExtracted2", foo.linksWithHref.get(1));
 
-        assertEquals(url + "/./page2", foo.nextPage.getLinkUrl());
+        assertEquals(url + "/page2", foo.nextPage.getLinkUrl());
 
-        assertEquals("www.example.com", foo.linkList.get(0).getLinkUrl());
-        assertEquals(url + "/./page3", foo.linkList.get(1).getLinkUrl());
+        assertEquals(url + "/www.example.com", foo.linkList.get(0).getLinkUrl());
+        assertEquals(url + "/page3", foo.linkList.get(1).getLinkUrl());
 
         assertEquals("HEAD1", foo.repeatingContentsNoSurroundingTag.get(0).head);
         assertEquals("TAIL1", foo.repeatingContentsNoSurroundingTag.get(0).tail);
@@ -81,7 +118,54 @@ public class MappingTest {
         });
 
         assertEquals("Title", fooPage2.someContent.title);
-        assertEquals("http://www.isageek.com.br/./page2", linkReceived.get());
+        assertEquals("http://www.isageek.com.br/page2", linkReceived.get());
+    }
+
+    @Test
+    public void testLinksDoNotKeepElementsByDefault() {
+        final String url = "http://www.isageek.com.br";
+        final Foo foo =  new Webgrude().map(fooPageContents, Foo.class, url);
+
+        assertNull(foo.nextPage.getHrefElement());
+        assertEquals("link to next page", foo.nextPage.getText());
+        assertEquals("http://www.isageek.com.br/page2", foo.nextPage.getLinkUrl());
+
+        final Foo keeping = Webgrude.builder().keepLinkElements(true).build().map(fooPageContents, Foo.class, url);
+        assertEquals("./page2", keeping.nextPage.getHrefElement().attr("href"));
+        assertEquals("link to next page", keeping.nextPage.getText());
+    }
+
+    @Test
+    public void testVisitAllLinksConcurrently() {
+        final String url = "http://www.isageek.com.br";
+        final Foo foo =  pageToClassMapper.map(fooPageContents, Foo.class, url);
+        final List<Link<Foo>> links = List.of(foo.nextPage, foo.nextPage, foo.nextPage);
+        final CountDownLatch allVisiting = new CountDownLatch(links.size());
+
+        final List<Foo> pages = Link.visitAll(links, link -> {
+            allVisiting.countDown();
+            try {
+                assertTrue(allVisiting.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return fooPageContents;
+        }, links.size());
+
+        assertEquals(3, pages.size());
+        pages.forEach(page -> assertEquals("Title", page.someContent.title));
+    }
+
+    @Test
+    public void testVisitAllThrowsFirstFailure() {
+        final String url = "http://www.isageek.com.br";
+        final Foo foo =  pageToClassMapper.map(fooPageContents, Foo.class, url);
+
+        final GetException e = assertThrows(GetException.class, () -> Link.visitAll(foo.linkList, link -> {
+            throw new GetException(link);
+        }, 2));
+
+        assertEquals("Error while getting http://www.isageek.com.br/www.example.com", e.getMessage());
     }
 
     @Test
@@ -92,6 +176,362 @@ public class MappingTest {
         assertEquals("http://localhost:8080/x/bar/y/baz", url);
     }
 
+    @Test
+    public void testMappingPlanIsCompiledOnce() {
+        final MappingPlan<Foo> plan = MappingPlan.of(Foo.class);
+
+        assertSame(plan, MappingPlan.of(Foo.class));
+        assertEquals(FieldPlan.Kind.LIST_OF_LINKS, plan.fields().stream()
+                .filter(f -> f.name().equals("linkList")).findFirst().orElseThrow().kind());
+        assertEquals(1, plan.afterPageLoadMethods().size());
+    }
+
+    @Test
+    public void testUnloadablePageMappersAreSkipped() {
+        // The test service file registers a mapper class that doesn't exist
+        assertNull(PageMapper.forType(Foo.class));
+        assertEquals("Title", new Webgrude().map(fooPageContents, Foo.class).someContent.title);
+    }
+
+    @Test
+    public void testSelectorsAreCompiledOnce() {
+        final FieldMapping css = new FieldMapping("#links a", "href", null, null, null, false);
+        assertSame(css.evaluator(), css.evaluator());
+        final FieldMapping xpath = new FieldMapping("/aaa/ab", null, null, null, null, true);
+        assertSame(xpath.xpathExpression(), xpath.xpathExpression());
+
+        final FieldMapping invalid = new FieldMapping("a[", null, null, null, null, false);
+        assertThrows(Selector.SelectorParseException.class, invalid::evaluator);
+    }
+
+    @Test
+    public void testSinglePassSelectionMapsLikeFieldByField() {
+        final String url = "http://www.isageek.com.br";
+        final MappingPlan<Foo> plan = MappingPlan.of(Foo.class);
+        assertTrue(field(plan, "multiSelector").hasSimpleSelector());
+        assertTrue(field(plan, "htmlContent").hasSimpleSelector());
+        assertFalse(field(plan, "linksWithHref").hasSimpleSelector());
+
+        final Foo fieldByField = new Webgrude().map(fooPageContents, Foo.class, url);
+        final Foo singlePass = Webgrude.builder().singlePassSelection(true).build().map(fooPageContents, Foo.class, url);
+
+        assertEquals(describe(fieldByField), describe(singlePass));
+        assertThrows(TooManyResultsException.class, () -> Webgrude.builder().singlePassSelection(true).build()
+                .map(fooPageContents, TooManyResultsError.class));
+    }
+
+    @Test
+    public void testNestedClassesAreMappedInPlace() {
+        final String url = "http://www.isageek.com.br";
+        final Document doc = Jsoup.parse(fooPageContents);
+        final String html = doc.outerHtml();
+        final Webgrude webgrude = new Webgrude();
+
+        final Foo first = webgrude.map(doc, Foo.class, url);
+        final Foo second = webgrude.map(doc, Foo.class, url);
+        final LazyFoo lazyFoo = webgrude.map(doc, LazyFoo.class, url);
+        final Foo.SomeContent someContent = webgrude.map(doc.selectFirst("#some-content"), Foo.SomeContent.class, url);
+
+        assertEquals(html, doc.outerHtml());
+        assertEquals(describe(webgrude.map(fooPageContents, Foo.class, url)), describe(first));
+        assertEquals(describe(first), describe(second));
+        assertEquals("Title", someContent.title);
+        assertEquals(first.someContent.text, someContent.text);
+        assertEquals(first.repeatingContentsNoSurroundingTag.size(), lazyFoo.repeatingContents.size());
+    }
+
+    @Test
+    public void testMappingListenerGetsFieldEvents() {
+        final List<String> events = new ArrayList<>();
+        final Webgrude webgrude = Webgrude.builder().mappingListener(new MappingListener() {
+            @Override
+            public void fieldStarted(final FieldPlan field) {
+                events.add("start " + field.name());
+            }
+
+            @Override
+            public void fieldSelected(final FieldPlan field, final int count) {
+                events.add("select " + field.name() + " " + count);
+            }
+
+            @Override
+            public void fieldConverted(final FieldPlan field, final Object value) {
+                if (value instanceof String || value instanceof Number) {
+                    events.add("set " + field.name() + " " + value);
+                }
+            }
+
+            @Override
+            public void fieldEnded(final FieldPlan field, final long nanos) {
+                assertTrue(nanos >= 0);
+                events.add("end " + field.name());
+            }
+        }).build();
+
+        final Foo foo = webgrude.map(fooPageContents, Foo.class, "http://www.isageek.com.br");
+
+        assertEquals(2, foo.linksWithHref.size());
+        final int someContent = events.indexOf("start someContent");
+        assertEquals(List.of("start someContent", "select someContent 1", "start title", "select title 1",
+                "set title Title", "end title"), events.subList(someContent, someContent + 6));
+        assertTrue(events.contains("select linksWithHref 2"));
+        assertTrue(events.contains("select doesNotExist 0"));
+        assertTrue(events.contains("set intValue 42"));
+        assertEquals(events.stream().filter(e -> e.startsWith("start ")).count(),
+                events.stream().filter(e -> e.startsWith("end ")).count());
+    }
+
+    private static FieldPlan field(final MappingPlan<?> plan, final String name) {
+        return plan.fields().stream().filter(f -> f.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static List<Object> describe(final Foo foo) {
+        return List.of(foo.someContent.title, foo.someContent.text, foo.someNestedContent.getHeader(),
+                foo.section.someRepeatingContent, foo.htmlContent.html(), foo.linksInnerHtml, foo.linksOuterHtml,
+                foo.linksWithHref, foo.nextPage.getLinkUrl(), foo.linkList.get(1).getLinkUrl(), foo.multiSelector,
+                foo.repeatingContentsNoSurroundingTag.get(1).tail, foo.doesNotExist, foo.getIntValue(),
+                foo.getFloatEuropeanValue(), foo.date);
+    }
+
+    @Test
+    public void testConcurrentMappingSharesFormatters() throws Exception {
+        final Webgrude webgrude = new Webgrude();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Foo>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> webgrude.map(fooPageContents, Foo.class, "http://www.isageek.com.br")));
+            }
+            final SimpleDateFormat df = new SimpleDateFormat("MMMM dd, yyyy - h:mm a", Locale.US);
+            for (final Future<Foo> result : results) {
+                final Foo foo = result.get();
+                assertEquals("September 23, 2016 - 1:00 PM", df.format(foo.date));
+                assertEquals(42.24, foo.getFloatEuropeanValue(), 0.001);
+                assertEquals(42, foo.getIntValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDatesAreParsedLikeSimpleDateFormat() {
+        final Dates dates = pageToClassMapper.map(
+                "<p id='two-digit-year'>05.09.85</p><p id='fractional-seconds'>12:30:15.5</p>", Dates.class);
+
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTime(dates.twoDigitYear);
+        // Two digit years are within 80 years before and 20 years after now
+        assertEquals(1985, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.SEPTEMBER, calendar.get(Calendar.MONTH));
+        assertEquals(5, calendar.get(Calendar.DAY_OF_MONTH));
+
+        calendar.setTime(dates.fractionalSeconds);
+        assertEquals(15, calendar.get(Calendar.SECOND));
+        // S is a number of milliseconds, not a fraction of a second
+        assertEquals(5, calendar.get(Calendar.MILLISECOND));
+    }
+
+    @Test
+    public void testDefaultLocaleIsReadOnEachConversion() {
+        final String html = "<p id='number'>1,5</p>";
+        final Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.US);
+            assertEquals(15, pageToClassMapper.map(html, Dates.class).number, 0.001);
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals(1.5, pageToClassMapper.map(html, Dates.class).number, 0.001);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testMappingFromStream() throws IOException {
+        final String url = "http://www.isageek.com.br";
+        final byte[] bytes = fooPageContents.getBytes(StandardCharsets.UTF_8);
+
+        final AtomicInteger closes = new AtomicInteger();
+        final InputStream in = new ByteArrayInputStream(bytes) {
+            @Override
+            public void close() {
+                closes.incrementAndGet();
+            }
+        };
+        final Foo fromStream = pageToClassMapper.map(in, null, Foo.class, url);
+        assertEquals("Title", fromStream.someContent.title);
+        assertEquals(42, fromStream.getIntValue());
+        assertEquals(0, closes.get());
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        final Foo fromBuffer = pageToClassMapper.map(buffer, StandardCharsets.UTF_8, Foo.class, url);
+        assertEquals("Nested content Title", fromBuffer.someNestedContent.getHeader());
+        assertEquals(2, fromBuffer.section.someRepeatingContent.size());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testMappingCacheReusesPagesWithSameContents() {
+        final String url = "http://www.isageek.com.br";
+        final MappingCache cache = new MappingCache(1, Duration.ofMinutes(10));
+        final Webgrude webgrude = Webgrude.builder().mappingCache(cache).build();
+
+        final Foo first = webgrude.map(fooPageContents, Foo.class, url);
+        assertSame(first, webgrude.map(new String(fooPageContents), Foo.class, url));
+        assertNotSame(first, webgrude.map(fooPageContents, Foo.class, url + "/other"));
+        assertNotSame(first, webgrude.map(fooPageContents, Foo.class, url));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(3, cache.missCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMappingCacheReplacesPagesWhoseContentsChanged() {
+        final String url = "http://www.isageek.com.br";
+        final MappingCache cache = new MappingCache(2);
+        final Webgrude webgrude = Webgrude.builder().mappingCache(cache).build();
+        final String changed = fooPageContents.replace(">Title<", ">Changed<");
+
+        final Foo other = webgrude.map(fooPageContents, Foo.class, url + "/other");
+        webgrude.map(fooPageContents, Foo.class, url);
+        final Foo current = webgrude.map(changed, Foo.class, url);
+
+        assertEquals("Changed", current.someContent.title);
+        assertEquals(2, cache.size());
+        assertSame(current, webgrude.map(changed, Foo.class, url));
+        assertSame(other, webgrude.map(fooPageContents, Foo.class, url + "/other"));
+    }
+
+    @Test
+    public void testMappingCacheMapsPagesWithStreamsAgain() {
+        final String url = "http://www.isageek.com.br";
+        final MappingCache cache = new MappingCache(2);
+        final Webgrude webgrude = Webgrude.builder().mappingCache(cache).build();
+
+        final LazyFoo first = webgrude.map(fooPageContents, LazyFoo.class, url);
+        final LazyFoo second = webgrude.map(fooPageContents, LazyFoo.class, url);
+
+        assertNotSame(first, second);
+        assertEquals(42, first.integers.findFirst().orElseThrow());
+        assertEquals(42, second.integers.findFirst().orElseThrow());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLazyFieldsAreMappedOnAccess() {
+        final String url = "http://www.isageek.com.br";
+        final LazyFoo foo = pageToClassMapper.map(fooPageContents, LazyFoo.class, url);
+
+        final LazyList<Foo.SomeRepeatingContent> contents = foo.repeatingContents;
+        assertEquals(2, contents.size());
+        assertEquals(0, contents.mappedCount());
+        assertEquals("HEAD2", contents.get(1).head);
+        assertEquals(1, contents.mappedCount());
+        assertSame(contents.get(1), contents.get(1));
+
+        assertEquals("linkToBeExtracted1", foo.linksWithHref.iterator().next());
+        assertEquals("http://www.isageek.com.br/page3", foo.linkList.skip(1).findFirst().orElseThrow().getLinkUrl());
+        // The second node is not an integer, it only fails if it is read
+        assertEquals(42, foo.integers.findFirst().orElseThrow());
+        final LazyFoo again = pageToClassMapper.map(fooPageContents, LazyFoo.class, url);
+        assertThrows(WrongTypeForField.class, () -> again.integers.collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPartialPageStopsParsingWhenFieldsAreFound() throws IOException {
+        final StringBuilder html = new StringBuilder("<html><body><h1 id=\"title\">Product</h1>"
+                + "<span class=\"tag\">new</span>"
+                + "<div class=\"summary\">Fast <b>and</b> small<div class=\"price\">9.5</div></div>");
+        while (html.length() < 1024 * 1024) {
+            html.append("<div class=\"row\"><span class=\"tag\">old</span><p>filler</p></div>");
+        }
+        final byte[] bytes = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        final int[] read = {0};
+        final InputStream counting = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                final int n = super.read(b, off, len);
+                if (n > 0) read[0] += n;
+                return n;
+            }
+        };
+
+        final PartialPage page = pageToClassMapper.map(counting, StandardCharsets.UTF_8, PartialPage.class, "");
+
+        assertEquals("Product", page.title);
+        // The summary is only resolved once it is closed, after the price inside it
+        assertEquals("Fast and small 9.5", page.summary);
+        assertEquals(9.5, page.price, 0.001);
+        // Lists only have the nodes read until then
+        assertEquals(List.of("new"), page.tags);
+        assertTrue(read[0] < bytes.length / 4, "read " + read[0] + " of " + bytes.length);
+        assertEquals(page.summary, pageToClassMapper.map(html.toString(), PartialPage.class).summary);
+    }
+
+    @Test
+    public void testParallelListsKeepOrderAndFirstFailure() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final Webgrude webgrude = Webgrude.builder().parallelLists(pool, 16).build();
+            final Table table = webgrude.map(table(1000, -1, -1), Table.class, "");
+            assertEquals(1000, table.rows.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, table.rows.get(i).id);
+                assertEquals("row " + i, table.rows.get(i).name);
+            }
+
+            final WrongTypeForField e = assertThrows(WrongTypeForField.class,
+                    () -> webgrude.map(table(1000, 300, 900), Table.class, ""));
+            assertTrue(e.getMessage().contains("not a number 300"), e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String table(final int rows, final int firstBadRow, final int secondBadRow) {
+        final StringBuilder html = new StringBuilder("<table>");
+        for (int i = 0; i < rows; i++) {
+            final String id = i == firstBadRow || i == secondBadRow ? "not a number " + i : String.valueOf(i);
+            html.append("<tr><td class=\"id\">").append(id).append("</td><td class=\"name\">row ").append(i).append("</td></tr>");
+        }
+        return html.append("</table>").toString();
+    }
+
+    @Test
+    public void testMapAllKeepsOrderAndBoundsSourcesInFlight() throws IOException {
+        final Path file = Files.createTempFile("webgrude", ".html");
+        try {
+            Files.writeString(file, table(1, -1, -1));
+            final AtomicInteger taken = new AtomicInteger();
+            final Stream<Source> sources = IntStream.range(0, 30)
+                    .mapToObj(i -> i == 0 ? Source.of(file, StandardCharsets.UTF_8, "")
+                            : i % 2 == 0 ? Source.of(table(i + 1, -1, -1), "")
+                            : Source.of(table(i + 1, -1, -1).getBytes(StandardCharsets.UTF_8), null, ""))
+                    .peek(source -> taken.incrementAndGet());
+
+            try (Stream<Table> tables = new Webgrude().mapAll(sources, Table.class, 3)) {
+                final Iterator<Table> pages = tables.iterator();
+                assertEquals(1, pages.next().rows.size());
+                assertTrue(taken.get() <= 4, "took " + taken.get());
+                int expected = 2;
+                while (pages.hasNext()) {
+                    assertEquals(expected++, pages.next().rows.size());
+                }
+                assertEquals(31, expected);
+            }
+
+            final Stream<Source> failing = Stream.of(Source.of(table(2, -1, -1), ""), Source.of(table(2, 1, -1), ""));
+            try (Stream<Table> tables = new Webgrude().mapAll(failing, Table.class, 2)) {
+                final Iterator<Table> pages = tables.iterator();
+                assertEquals(2, pages.next().rows.size());
+                assertThrows(WrongTypeForField.class, pages::next);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void tooManyResults() {
         assertThrows(TooManyResultsException.class, () ->  pageToClassMapper.map(fooPageContents, TooManyResultsError.class));
@@ -0,0 +1,12 @@
+package webGrude;
+
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.elements.Link;
+
+@Page("http://localhost:{0}/docs/{1}/index.html")
+public class PageWithParameterizedLinks {
+
+    @Selector("a") public Link<PageWithParameterizedLinks> up;
+
+}
@@ -0,0 +1,119 @@
+package webGrude;
+
+import org.junit.jupiter.api.Test;
+import webGrude.http.GetException;
+import webGrude.http.LinkVisitor;
+import webGrude.http.RateLimitedLinkVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitTest {
+
+    @Test
+    public void testSameHostIsPaced() {
+        final List<Long> visits = new CopyOnWriteArrayList<>();
+        final LinkVisitor visitor = new RateLimitedLinkVisitor(href -> {
+            visits.add(System.nanoTime());
+            return "";
+        }, 20);
+
+        for (int i = 0; i < 5; i++) {
+            visitor.visitLink("http://example.com/page" + i);
+        }
+
+        for (int i = 1; i < visits.size(); i++) {
+            final long gapMillis = TimeUnit.NANOSECONDS.toMillis(visits.get(i) - visits.get(i - 1));
+            assertTrue(gapMillis >= 45, "visits " + gapMillis + "ms apart");
+        }
+    }
+
+    @Test
+    public void testDifferentHostsDoNotWait() throws Exception {
+        final LinkVisitor visitor = new RateLimitedLinkVisitor(href -> "", 0.5);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final long start = System.nanoTime();
+            final List<Future<String>> visits = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final String href = "http://host" + i + ".example.com/";
+                visits.add(executor.submit(() -> visitor.visitLink(href)));
+            }
+            for (final Future<String> visit : visits) {
+                visit.get(10, TimeUnit.SECONDS);
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCrawlDelayFromRobotsTxt() {
+        final Map<String, Integer> fetches = new ConcurrentHashMap<>();
+        final LinkVisitor visitor = new RateLimitedLinkVisitor(href -> {
+            fetches.merge(href, 1, Integer::sum);
+            return href.endsWith("/robots.txt")
+                    ? "User-agent: googlebot\nCrawl-delay: 10\n\nUser-agent: *\nDisallow: /private\nCrawl-delay: 0.2\n"
+                    : "";
+        }, 100, 1, true);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            visitor.visitLink("https://example.com/page" + i);
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 390);
+        assertEquals(1, fetches.get("https://example.com/robots.txt"));
+    }
+
+    @Test
+    public void testSlowRobotsTxtIsNotReadUnderTheBucketLock() throws Exception {
+        final CountDownLatch robotsRequested = new CountDownLatch(1);
+        final CountDownLatch robotsAnswered = new CountDownLatch(1);
+        final LinkVisitor visitor = new RateLimitedLinkVisitor(href -> {
+            if (href.endsWith("/robots.txt")) {
+                robotsRequested.countDown();
+                try {
+                    robotsAnswered.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "";
+        }, 100, 1, true);
+        final Thread first = new Thread(() -> visitor.visitLink("https://example.com/first"));
+        first.start();
+        robotsRequested.await();
+
+        // Waiting for the robots.txt read by another thread can be interrupted
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread second = new Thread(() -> {
+            try {
+                visitor.visitLink("https://example.com/second");
+            } catch (final Throwable e) {
+                failure.set(e);
+            }
+        });
+        second.start();
+        TimeUnit.MILLISECONDS.sleep(100);
+        second.interrupt();
+        second.join(2000);
+        robotsAnswered.countDown();
+        first.join(2000);
+
+        assertTrue(failure.get() instanceof GetException, "second visit failed with " + failure.get());
+    }
+}
@@ -3,6 +3,15 @@ package webGrude;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import webGrude.mappables.Bar;
+import webGrude.mappables.FeedItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class XMLTest {
 
@@ -16,4 +25,37 @@ public class XMLTest {
                 "content=NestedContent{content='Nested content', items=[a, b, c]}}", bar.toString());
     }
 
+    @Test
+    void mappingFromByteBuffer() {
+        final ByteBuffer buffer = ByteBuffer.wrap(barXmlContents.getBytes(StandardCharsets.UTF_8));
+        final Bar bar =  pageToClassMapper.map(buffer, null, Bar.class, "");
+        Assertions.assertEquals("Bar{ab='Test', ac='Another test', a1='A1test', " +
+                "content=NestedContent{content='Nested content', items=[a, b, c]}}", bar.toString());
+    }
+
+    @Test
+    void streamingItems() {
+        final String feed = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<feed><title>Feed</title>"
+                + "<product><title>First</title><price>1.5</price><tags><tag>a</tag><tag>b</tag></tags></product>"
+                + "<other><product><title>Not at the path</title></product></other>"
+                + "<product><title><![CDATA[Second & last]]></title><price>2</price></product>"
+                + "</feed>";
+        final InputStream xml = new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8));
+
+        try (Stream<FeedItem> items = pageToClassMapper.streamXml(xml, null, "/feed/product", FeedItem.class)) {
+            final List<FeedItem> products = items.collect(Collectors.toList());
+            Assertions.assertEquals(2, products.size());
+            Assertions.assertEquals("First", products.get(0).title);
+            Assertions.assertEquals(1.5f, products.get(0).price);
+            Assertions.assertEquals(List.of("a", "b"), products.get(0).tags);
+            Assertions.assertEquals("Second & last", products.get(1).title);
+        }
+
+        final InputStream titles = new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8));
+        try (Stream<String> items = pageToClassMapper.streamXml(titles, StandardCharsets.UTF_8, "/feed/product/title", String.class)) {
+            Assertions.assertEquals("First", items.findFirst().orElseThrow());
+        }
+    }
+
 }
@@ -0,0 +1,20 @@
+package webGrude.mappables;
+
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+
+import java.util.Date;
+
+@Page
+public class Dates {
+
+	@Selector(value = "#two-digit-year", format = "dd.MM.yy")
+	public Date twoDigitYear;
+
+	@Selector(value = "#fractional-seconds", format = "HH:mm:ss.S")
+	public Date fractionalSeconds;
+
+	@Selector("#number")
+	public float number;
+
+}
@@ -0,0 +1,19 @@
+package webGrude.mappables;
+
+import webGrude.mapping.annotations.*;
+
+import java.util.List;
+
+@XML
+public class FeedItem {
+
+    @XPath("/title")
+    public String title;
+
+    @XPath("/price")
+    public float price;
+
+    @XPath("/tags/tag")
+    public List<String> tags;
+
+}
@@ -0,0 +1,16 @@
+package webGrude.mappables;
+
+import java.util.stream.Stream;
+
+import webGrude.mapping.LazyList;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.elements.Link;
+
+public class LazyFoo {
+
+    @Selector(".some-repeating-content-outside-a-tag") public LazyList<Foo.SomeRepeatingContent> repeatingContents;
+    @Selector(value = "#links a", attr = "href")       public Iterable<String> linksWithHref;
+    @Selector(value = "#linkList a", attr = "href")    public Stream<Link<Foo>> linkList;
+    @Selector("#integer,#boolean")                     public Stream<Integer> integers;
+
+}
@@ -0,0 +1,16 @@
+package webGrude.mappables;
+
+import java.util.List;
+
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+
+@Page(partial = true)
+public class PartialPage {
+
+    @Selector("#title")    public String title;
+    @Selector(".summary")  public String summary;
+    @Selector(".price")    public float price;
+    @Selector(".tag")      public List<String> tags;
+
+}
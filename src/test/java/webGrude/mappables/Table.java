@@ -0,0 +1,16 @@
+package webGrude.mappables;
+
+import java.util.List;
+
+import webGrude.mapping.annotations.Selector;
+
+public class Table {
+
+    static public class Row {
+        @Selector(".id")   public int id;
+        @Selector(".name") public String name;
+    }
+
+    @Selector("tr") public List<Row> rows;
+
+}
@@ -0,0 +1,113 @@
+package webGrude.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webGrude.mapping.MapperSupport;
+import webGrude.mapping.elements.FieldMapping;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each value conversion Webgrude applies to a selected node, in isolation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private static final FieldMapping TEXT = new FieldMapping("#text", "", "", "", "", false);
+    private static final FieldMapping ATTRIBUTE = new FieldMapping("#text", "title", "", "", "", false);
+    private static final FieldMapping HTML = new FieldMapping("#text", "html", "", "", "", false);
+    private static final FieldMapping REGEX = new FieldMapping("#comments", "", "([0-9]+) comments", "", "0", false);
+    private static final FieldMapping INTEGER = new FieldMapping("#integer", "", "", "", "", false);
+    private static final FieldMapping FLOAT = new FieldMapping("#float", "", "", "en_US", "", false);
+    private static final FieldMapping FLOAT_EUROPEAN = new FieldMapping("#float-european", "", "", "fr_FR", "", false);
+    private static final FieldMapping BOOLEAN = new FieldMapping("#boolean", "", "", "", "", false);
+    private static final FieldMapping DATE = new FieldMapping("#date", "title", "MMMM dd, yyyy - h:mm a", "en_US", "", false);
+
+    private Element text;
+    private Element comments;
+    private Element integer;
+    private Element floatNumber;
+    private Element floatEuropean;
+    private Element bool;
+    private Element date;
+
+    @Setup
+    public void setup() {
+        final Document doc = Jsoup.parse("<div id=\"text\" title=\"A title\">Some <b>bold</b> text</div>"
+                + "<div id=\"comments\">42 comments</div>"
+                + "<div id=\"integer\">42</div>"
+                + "<div id=\"float\">42.24</div>"
+                + "<div id=\"float-european\">42,24</div>"
+                + "<div id=\"boolean\">true</div>"
+                + "<a id=\"date\" title=\"September 23, 2016 - 1:00 pm\">date</a>");
+        text = doc.getElementById("text");
+        comments = doc.getElementById("comments");
+        integer = doc.getElementById("integer");
+        floatNumber = doc.getElementById("float");
+        floatEuropean = doc.getElementById("float-european");
+        bool = doc.getElementById("boolean");
+        date = doc.getElementById("date");
+    }
+
+    @Benchmark
+    public String text() {
+        return MapperSupport.stringValue(text, TEXT);
+    }
+
+    @Benchmark
+    public String attribute() {
+        return MapperSupport.stringValue(text, ATTRIBUTE);
+    }
+
+    @Benchmark
+    public String html() {
+        return MapperSupport.stringValue(text, HTML);
+    }
+
+    @Benchmark
+    public String regex() {
+        return MapperSupport.stringValue(comments, REGEX);
+    }
+
+    @Benchmark
+    public int integer() {
+        return MapperSupport.intValue(integer, INTEGER);
+    }
+
+    @Benchmark
+    public float floatNumber() {
+        return MapperSupport.floatValue(floatNumber, FLOAT);
+    }
+
+    @Benchmark
+    public float floatWithLocale() {
+        return MapperSupport.floatValue(floatEuropean, FLOAT_EUROPEAN);
+    }
+
+    @Benchmark
+    public boolean bool() {
+        return MapperSupport.booleanValue(bool, BOOLEAN);
+    }
+
+    @Benchmark
+    public Date date() {
+        return MapperSupport.dateValue(date, DATE);
+    }
+}
@@ -0,0 +1,55 @@
+package webGrude.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webGrude.Webgrude;
+import webGrude.benchmarks.fixtures.CatalogPage;
+import webGrude.benchmarks.fixtures.FeedPage;
+import webGrude.benchmarks.fixtures.Fixtures;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Populating {@code List} fields: lists of values from a large XML feed and lists of nested
+ * annotated classes from a catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListPopulationBenchmark {
+
+    @Param({"100", "5000"})
+    public int rows;
+
+    private String feed;
+    private String catalog;
+    private final Webgrude webgrude = new Webgrude();
+
+    @Setup
+    public void setup() {
+        feed = Fixtures.feed(rows);
+        catalog = Fixtures.catalog(Math.max(1, rows / 50), 50);
+    }
+
+    @Benchmark
+    public FeedPage xmlFeedValueLists() {
+        return webgrude.map(feed, FeedPage.class);
+    }
+
+    @Benchmark
+    public CatalogPage nestedClassLists() {
+        return webgrude.map(catalog, CatalogPage.class, "https://example.com/");
+    }
+}
@@ -0,0 +1,55 @@
+package webGrude.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webGrude.Webgrude;
+import webGrude.benchmarks.fixtures.Fixtures;
+import webGrude.benchmarks.fixtures.HackerNewsPage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much of {@code Webgrude.map} is spent parsing the page with jsoup and how much mapping it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseVsMapBenchmark {
+
+    private static final String URL = "https://news.ycombinator.com/";
+
+    @Param({"30", "500"})
+    public int stories;
+
+    private String listing;
+    private final Webgrude webgrude = new Webgrude();
+
+    @Setup
+    public void setup() {
+        listing = Fixtures.hackerNews(stories);
+    }
+
+    @Benchmark
+    public Document jsoupParse() {
+        return Jsoup.parse(listing);
+    }
+
+    @Benchmark
+    public HackerNewsPage webgrudeMap() {
+        return webgrude.map(listing, HackerNewsPage.class, URL);
+    }
+}
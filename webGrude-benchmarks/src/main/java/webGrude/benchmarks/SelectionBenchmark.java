@@ -0,0 +1,64 @@
+package webGrude.benchmarks;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webGrude.benchmarks.fixtures.Fixtures;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSS selection against {@literal @}XPath selection of the same nodes on an already parsed document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectionBenchmark {
+
+    @Param({"30", "500"})
+    public int size;
+
+    private Document listing;
+    private Document feed;
+
+    @Setup
+    public void setup() {
+        listing = Jsoup.parse(Fixtures.hackerNews(size));
+        feed = Jsoup.parse(Fixtures.feed(size), Parser.xmlParser());
+    }
+
+    @Benchmark
+    public Elements htmlCss() {
+        return listing.select("span.titleline > a");
+    }
+
+    @Benchmark
+    public Elements htmlXpath() {
+        return listing.selectXpath("//span[@class='titleline']/a");
+    }
+
+    @Benchmark
+    public Elements xmlCss() {
+        return feed.select("feed > entry > title");
+    }
+
+    @Benchmark
+    public Elements xmlXpath() {
+        return feed.selectXpath("/feed/entry/title");
+    }
+}
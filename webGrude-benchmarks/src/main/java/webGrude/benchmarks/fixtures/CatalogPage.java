@@ -0,0 +1,31 @@
+package webGrude.benchmarks.fixtures;
+
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+
+import java.util.Date;
+import java.util.List;
+
+@Page
+public class CatalogPage {
+
+    public static class Details {
+        @Selector(".sku") public String sku;
+        @Selector(value = ".weight", format = "([0-9.]+) kg") public float weight;
+        @Selector(value = ".added", attr = "title", format = "MMMM dd, yyyy", locale = "en_US") public Date added;
+    }
+
+    public static class Product {
+        @Selector("h3") public String name;
+        @Selector(".price") public float price;
+        @Selector(".details") public Details details;
+    }
+
+    public static class Category {
+        @Selector("h2") public String name;
+        @Selector(".product") public List<Product> products;
+    }
+
+    @Selector("h1") public String title;
+    @Selector(".category") public List<Category> categories;
+}
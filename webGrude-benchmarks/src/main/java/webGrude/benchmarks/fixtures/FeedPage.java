@@ -0,0 +1,15 @@
+package webGrude.benchmarks.fixtures;
+
+import webGrude.mapping.annotations.XML;
+import webGrude.mapping.annotations.XPath;
+
+import java.util.List;
+
+@XML
+public class FeedPage {
+    @XPath("/feed/title") public String title;
+    @XPath("/feed/entry/id") public List<Integer> ids;
+    @XPath("/feed/entry/title") public List<String> titles;
+    @XPath("/feed/entry/price") public List<Float> prices;
+    @XPath("/feed/entry/available") public List<Boolean> available;
+}
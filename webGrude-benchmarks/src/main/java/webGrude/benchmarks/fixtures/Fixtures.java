@@ -0,0 +1,85 @@
+package webGrude.benchmarks.fixtures;
+
+/**
+ * Generates the documents the benchmarks map, sized by the benchmark parameters.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * A HackerNews-like listing, two table rows per story.
+     *
+     * @param stories number of stories
+     * @return the html
+     */
+    public static String hackerNews(final int stories) {
+        final StringBuilder html = new StringBuilder(stories * 600);
+        html.append("<html><head><title>Hacker News</title></head><body><center><table id=\"hnmain\">")
+                .append("<tr><td><table class=\"itemlist\">");
+        for (int i = 1; i <= stories; i++) {
+            html.append("<tr class=\"athing\" id=\"").append(i).append("\">")
+                    .append("<td class=\"title\"><span class=\"rank\">").append(i).append(".</span></td>")
+                    .append("<td class=\"title\"><span class=\"titleline\"><a href=\"https://example.com/story/")
+                    .append(i).append("\">Story number ").append(i).append(" about something</a>")
+                    .append("<span class=\"sitebit\"> (<a href=\"from?site=example.com\">example.com</a>)</span>")
+                    .append("</span></td></tr>")
+                    .append("<tr><td colspan=\"2\"></td><td class=\"subtext\"><span class=\"subline\">")
+                    .append("<span class=\"score\">").append(i * 7 % 500).append(" points</span> by ")
+                    .append("<a class=\"hnuser\" href=\"user?id=user").append(i).append("\">user").append(i)
+                    .append("</a> <span class=\"age\" title=\"2024-01-31T10:00:00\"><a href=\"item?id=")
+                    .append(i).append("\">2 hours ago</a></span> | <a href=\"item?id=").append(i).append("\">")
+                    .append(i % 9 == 0 ? "discuss" : (i * 3 % 200) + "&nbsp;comments")
+                    .append("</a></span></td></tr><tr class=\"spacer\"></tr>");
+        }
+        html.append("<tr><td><a class=\"morelink\" href=\"news?p=2\">More</a></td></tr>")
+                .append("</table></td></tr></table></center></body></html>");
+        return html.toString();
+    }
+
+    /**
+     * A product feed.
+     *
+     * @param entries number of entries
+     * @return the xml
+     */
+    public static String feed(final int entries) {
+        final StringBuilder xml = new StringBuilder(entries * 200);
+        xml.append("<feed><title>Products</title><updated>2024-01-31</updated>");
+        for (int i = 1; i <= entries; i++) {
+            xml.append("<entry><id>").append(i).append("</id>")
+                    .append("<title>Product ").append(i).append("</title>")
+                    .append("<price>").append(i % 100).append(".99</price>")
+                    .append("<available>").append(i % 3 != 0).append("</available>")
+                    .append("</entry>");
+        }
+        xml.append("</feed>");
+        return xml.toString();
+    }
+
+    /**
+     * A catalog of categories with products, each product with a details block.
+     *
+     * @param categories number of categories
+     * @param products   products in each category
+     * @return the html
+     */
+    public static String catalog(final int categories, final int products) {
+        final StringBuilder html = new StringBuilder(categories * products * 400);
+        html.append("<html><body><h1>Catalog</h1>");
+        for (int c = 1; c <= categories; c++) {
+            html.append("<section class=\"category\"><h2>Category ").append(c).append("</h2>");
+            for (int p = 1; p <= products; p++) {
+                html.append("<div class=\"product\"><h3>Product ").append(c).append('-').append(p).append("</h3>")
+                        .append("<span class=\"price\">").append(p).append(".50</span>")
+                        .append("<div class=\"details\"><span class=\"sku\">SKU-").append(c).append('-').append(p)
+                        .append("</span><span class=\"weight\">").append(p % 10).append(".25 kg</span>")
+                        .append("<span class=\"added\" title=\"January 31, 2024\">added</span></div></div>");
+            }
+            html.append("</section>");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package webGrude.benchmarks.fixtures;
+
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.elements.Link;
+
+import java.util.List;
+
+@Page("https://news.ycombinator.com/")
+public class HackerNewsPage {
+
+    public static class Story {
+        @Selector(value = ".rank", format = "([0-9]+)\\.") public int rank;
+        @Selector(".titleline > a") public String title;
+        @Selector(".titleline > a") public Link<HackerNewsPage> link;
+        @Selector(".sitebit a") public String site;
+    }
+
+    @Selector("tr.athing") public List<Story> stories;
+    @Selector(value = ".subtext .score", format = "([0-9]+) points") public List<Integer> scores;
+    @Selector(value = ".subtext .subline > a:last-child", format = "([0-9]+).comments", defValue = "0") public List<Integer> comments;
+    @Selector("a.morelink") public Link<HackerNewsPage> nextPage;
+}
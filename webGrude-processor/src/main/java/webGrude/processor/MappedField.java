@@ -0,0 +1,109 @@
+package webGrude.processor;
+
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.annotations.XPath;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * A mapped field as seen by the processor: its selector and how its value is built.
+ */
+final class MappedField {
+
+    enum Kind {
+        VALUE,
+        LINK,
+        NESTED,
+        LIST_OF_VALUES,
+        LIST_OF_LINKS,
+        LIST_OF_NESTED
+    }
+
+    final String name;
+    final String value;
+    final String attr;
+    final String format;
+    final String locale;
+    final String defValue;
+    final boolean isXpath;
+
+    Kind kind;
+    /** The MapperSupport method converting a node, null for Element values. */
+    String converter;
+    /** The item class for lists or the visited class for links. */
+    String valueClass;
+    TypeElement nestedType;
+    /** True for LazyList, Iterable and Stream fields, whose items are mapped when read. */
+    boolean lazy;
+    boolean stream;
+
+    private MappedField(
+            final String name,
+            final String value,
+            final String attr,
+            final String format,
+            final String locale,
+            final String defValue,
+            final boolean isXpath
+    ) {
+        this.name = name;
+        this.value = value;
+        this.attr = attr;
+        this.format = format;
+        this.locale = locale;
+        this.defValue = defValue;
+        this.isXpath = isXpath;
+    }
+
+    /**
+     * Mirrors {@code FieldMapping.from(AnnotatedElement)}, a {@literal @}Selector takes precedence.
+     */
+    static MappedField of(final VariableElement field, final Selector selector, final XPath xPath) {
+        final String name = field.getSimpleName().toString();
+        if (selector != null) {
+            return new MappedField(name, selector.value(), selector.attr(), selector.format(),
+                    selector.locale(), selector.defValue(), false);
+        }
+        return new MappedField(name, xPath.value(), null, null, null, null, true);
+    }
+
+    boolean value(final String converter) {
+        this.kind = Kind.VALUE;
+        this.converter = converter;
+        return true;
+    }
+
+    boolean link(final String target) {
+        this.kind = Kind.LINK;
+        this.valueClass = target;
+        return true;
+    }
+
+    boolean nested(final TypeElement type) {
+        this.kind = Kind.NESTED;
+        this.nestedType = type;
+        this.valueClass = type.getQualifiedName().toString();
+        return true;
+    }
+
+    boolean listOfValues(final String itemClass, final String converter) {
+        this.kind = Kind.LIST_OF_VALUES;
+        this.valueClass = itemClass;
+        this.converter = converter;
+        return true;
+    }
+
+    boolean listOfLinks(final String target) {
+        this.kind = Kind.LIST_OF_LINKS;
+        this.valueClass = target;
+        return true;
+    }
+
+    boolean listOfNested(final TypeElement type) {
+        this.kind = Kind.LIST_OF_NESTED;
+        this.nestedType = type;
+        this.valueClass = type.getQualifiedName().toString();
+        return true;
+    }
+}
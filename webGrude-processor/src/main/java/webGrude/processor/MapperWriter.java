@@ -0,0 +1,179 @@
+package webGrude.processor;
+
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes the source of a generated mapper.
+ * <p>
+ * Every type is written with its qualified name, so the generated code can't clash with the
+ * names in the mapped class package.
+ */
+final class MapperWriter {
+
+    private static final String SUPPORT = "webGrude.mapping.MapperSupport";
+    private static final String FIELD_MAPPING = "webGrude.mapping.elements.FieldMapping";
+    private static final String ELEMENT = "org.jsoup.nodes.Element";
+    private static final String ELEMENTS = "org.jsoup.select.Elements";
+    private static final String LINK = "webGrude.mapping.elements.Link";
+    private static final String BASE_URL = "webGrude.mapping.BaseUrl";
+
+    private final String packageName;
+    private final String mapperName;
+    private final String typeName;
+    private final boolean isXml;
+    private final List<MappedField> fields;
+    private final List<String> afterPageLoad;
+    private final Function<TypeElement, String> mapperNames;
+    private final StringBuilder out = new StringBuilder();
+
+    MapperWriter(
+            final String packageName,
+            final String mapperName,
+            final String typeName,
+            final boolean isXml,
+            final List<MappedField> fields,
+            final List<String> afterPageLoad,
+            final Function<TypeElement, String> mapperNames
+    ) {
+        this.packageName = packageName;
+        this.mapperName = mapperName;
+        this.typeName = typeName;
+        this.isXml = isXml;
+        this.fields = fields;
+        this.afterPageLoad = afterPageLoad;
+        this.mapperNames = mapperNames;
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("/**");
+        line(" * Maps {@link " + typeName + "}. Generated by webGrude-processor, do not edit.");
+        line(" */");
+        line("@javax.annotation.processing.Generated(\"" + PageMapperProcessor.class.getName() + "\")");
+        line("public final class " + mapperName + " implements webGrude.mapping.PageMapper<" + typeName + "> {");
+        line("");
+        for (final MappedField field : fields) {
+            line("    private static final " + FIELD_MAPPING + " F_" + field.name + " = new " + FIELD_MAPPING + "("
+                    + literal(field.value) + ", " + literal(field.attr) + ", " + literal(field.format) + ", "
+                    + literal(field.locale) + ", " + literal(field.defValue) + ", " + field.isXpath + ");");
+        }
+        for (final MappedField field : fields) {
+            if (field.nestedType != null) {
+                final String nestedMapper = mapperNames.apply(field.nestedType);
+                line("    private static final " + nestedMapper + " M_" + field.name + " = new " + nestedMapper + "();");
+            }
+        }
+        line("");
+        line("    @Override");
+        line("    public Class<" + typeName + "> type() {");
+        line("        return " + typeName + ".class;");
+        line("    }");
+        line("");
+        line("    @Override");
+        line("    public boolean isXml() {");
+        line("        return " + isXml + ";");
+        line("    }");
+        line("");
+        line("    @Override");
+        line("    public " + typeName + " map(final " + ELEMENT + " scope, final " + BASE_URL + " baseUrl, final webGrude.Webgrude webgrude) {");
+        line("        final " + typeName + " instance = new " + typeName + "();");
+        if (fields.stream().anyMatch(f -> !isList(f))) {
+            line("        " + ELEMENT + " node;");
+        }
+        for (final MappedField field : fields) {
+            if (isList(field)) {
+                writeList(field);
+            } else {
+                writeSingle(field);
+            }
+        }
+        line("        return instance;");
+        line("    }");
+        line("");
+        line("    @Override");
+        line("    public void afterPageLoad(final " + typeName + " instance) {");
+        for (final String method : afterPageLoad) {
+            line("        instance." + method + "();");
+        }
+        line("    }");
+        line("}");
+        return out.toString();
+    }
+
+    private void writeSingle(final MappedField field) {
+        line("        node = " + SUPPORT + ".selectOne(scope, F_" + field.name + ");");
+        line("        if (node != null) {");
+        line("            instance." + field.name + " = " + valueOf("node", field) + ";");
+        line("        }");
+    }
+
+    private void writeList(final MappedField field) {
+        final String itemType = field.kind == MappedField.Kind.LIST_OF_LINKS
+                ? LINK + "<" + field.valueClass + ">"
+                : field.valueClass;
+        line("        {");
+        line("            final " + ELEMENTS + " nodes = " + SUPPORT + ".select(scope, F_" + field.name + ");");
+        if (field.lazy) {
+            line("            final webGrude.mapping.LazyList<" + itemType + "> list = new webGrude.mapping.LazyList<>(nodes, item -> "
+                    + valueOf("item", field) + ");");
+            line("            instance." + field.name + " = list" + (field.stream ? ".stream()" : "") + ";");
+            line("        }");
+            return;
+        }
+        line("            final java.util.List<" + itemType + "> list = " + SUPPORT + ".list(webgrude, nodes, item -> "
+                + valueOf("item", field) + ");");
+        line("            instance." + field.name + " = list;");
+        line("        }");
+    }
+
+    private String valueOf(final String node, final MappedField field) {
+        switch (field.kind) {
+            case LINK:
+            case LIST_OF_LINKS:
+                return SUPPORT + ".link(webgrude, " + node + ", " + field.valueClass + ".class, baseUrl)";
+            case NESTED:
+            case LIST_OF_NESTED:
+                return "M_" + field.name + ".map(" + node + ", baseUrl, webgrude)";
+            default:
+                return field.converter == null
+                        ? node
+                        : SUPPORT + "." + field.converter + "(" + node + ", F_" + field.name + ")";
+        }
+    }
+
+    private static boolean isList(final MappedField field) {
+        return field.kind == MappedField.Kind.LIST_OF_VALUES
+                || field.kind == MappedField.Kind.LIST_OF_LINKS
+                || field.kind == MappedField.Kind.LIST_OF_NESTED;
+    }
+
+    private void line(final String line) {
+        out.append(line).append('\n');
+    }
+
+    static String literal(final String value) {
+        if (value == null) return "null";
+        final StringBuilder literal = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,348 @@
+package webGrude.processor;
+
+import webGrude.mapping.annotations.AfterPageLoad;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.annotations.XML;
+import webGrude.mapping.annotations.XPath;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code webGrude.mapping.PageMapper} for each class with {@literal @}Selector or
+ * {@literal @}XPath fields.
+ * <p>
+ * The generated mappers select with jsoup and write the fields directly, so they can only be
+ * generated for classes whose mapped fields, no arguments constructor and
+ * {@literal @}AfterPageLoad methods are not private. Other classes are skipped with a note and
+ * keep being mapped by reflection. Field types Webgrude can't map are reported as compilation
+ * errors.
+ * <p>
+ * The mappers are registered in {@code META-INF/services/webGrude.mapping.PageMapper}, which is how
+ * {@code Webgrude} finds them at runtime.
+ *
+ * @author beothorn
+ */
+@SupportedAnnotationTypes({
+        "webGrude.mapping.annotations.Selector",
+        "webGrude.mapping.annotations.XPath"
+})
+public class PageMapperProcessor extends AbstractProcessor {
+
+    static final String MAPPER_SUFFIX = "_PageMapper";
+    private static final String SERVICE_FILE = "META-INF/services/webGrude.mapping.PageMapper";
+
+    private static final String LINK = "webGrude.mapping.elements.Link";
+    private static final String LIST = "java.util.List";
+    private static final Set<String> LAZY_CONTAINERS = Set.of(
+            "webGrude.mapping.LazyList", "java.lang.Iterable", "java.util.stream.Stream");
+    private static final Map<String, String> VALUE_CONVERTERS = new HashMap<>();
+
+    static {
+        VALUE_CONVERTERS.put("java.lang.String", "stringValue");
+        VALUE_CONVERTERS.put("java.lang.Integer", "intValue");
+        VALUE_CONVERTERS.put("java.lang.Float", "floatValue");
+        VALUE_CONVERTERS.put("java.lang.Boolean", "booleanValue");
+        VALUE_CONVERTERS.put("java.util.Date", "dateValue");
+        VALUE_CONVERTERS.put("org.jsoup.nodes.Element", null);
+    }
+
+    private final Set<String> generatedMappers = new TreeSet<>();
+    private final Map<TypeElement, Boolean> analyzed = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Set<TypeElement> types = new LinkedHashSet<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(Selector.class)) {
+            types.add((TypeElement) element.getEnclosingElement());
+        }
+        for (final Element element : roundEnv.getElementsAnnotatedWith(XPath.class)) {
+            types.add((TypeElement) element.getEnclosingElement());
+        }
+        for (final TypeElement type : types) {
+            canGenerate(type);
+        }
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+        }
+        return false;
+    }
+
+    /**
+     * Analyzes a class and, if a mapper can be generated for it and every nested class it maps,
+     * writes the mapper sources.
+     */
+    private boolean canGenerate(final TypeElement type) {
+        final Boolean known = analyzed.get(type);
+        if (known != null) return known;
+        // Optimistic while the type is being analyzed, so classes nesting each other don't recurse forever
+        analyzed.put(type, true);
+
+        final String skipReason = skipReason(type);
+        if (skipReason != null) {
+            note(type, "No mapper generated for " + type.getQualifiedName() + ", " + skipReason
+                    + ". It will be mapped by reflection.");
+            analyzed.put(type, false);
+            return false;
+        }
+
+        final List<MappedField> fields = new ArrayList<>();
+        boolean valid = true;
+        for (final VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final Selector selector = field.getAnnotation(Selector.class);
+            final XPath xPath = field.getAnnotation(XPath.class);
+            if (selector == null && xPath == null) continue;
+            if (field.getModifiers().contains(Modifier.PRIVATE)
+                    || field.getModifiers().contains(Modifier.FINAL)
+                    || field.getModifiers().contains(Modifier.STATIC)) {
+                note(type, "No mapper generated for " + type.getQualifiedName() + ", field " + field.getSimpleName()
+                        + " is private, final or static. It will be mapped by reflection.");
+                analyzed.put(type, false);
+                return false;
+            }
+            final MappedField mappedField = MappedField.of(field, selector, xPath);
+            if (!resolveKind(field, mappedField)) {
+                valid = false;
+                continue;
+            }
+            fields.add(mappedField);
+        }
+        if (!valid) {
+            analyzed.put(type, false);
+            return false;
+        }
+
+        for (final MappedField field : fields) {
+            if (field.nestedType != null && !canGenerate(field.nestedType)) {
+                note(type, "No mapper generated for " + type.getQualifiedName() + ", the class of field "
+                        + field.name + " can't have a mapper. It will be mapped by reflection.");
+                analyzed.put(type, false);
+                return false;
+            }
+        }
+
+        final List<String> afterPageLoad = new ArrayList<>();
+        for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getAnnotation(AfterPageLoad.class) == null) continue;
+            if (method.getModifiers().contains(Modifier.PRIVATE) || !method.getParameters().isEmpty()) {
+                note(type, "No mapper generated for " + type.getQualifiedName() + ", @AfterPageLoad method "
+                        + method.getSimpleName() + " is private or has parameters. It will be mapped by reflection.");
+                analyzed.put(type, false);
+                return false;
+            }
+            afterPageLoad.add(method.getSimpleName().toString());
+        }
+
+        writeMapper(type, fields, afterPageLoad);
+        return true;
+    }
+
+    private String skipReason(final TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS) return "it is not a class";
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) return "it is abstract";
+        if (!type.getTypeParameters().isEmpty()) return "it has type parameters";
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            return "it is a local class";
+        }
+        for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) return "it is private";
+            if (((TypeElement) enclosing).getNestingKind() == NestingKind.MEMBER
+                    && !enclosing.getModifiers().contains(Modifier.STATIC)) {
+                return "it is an inner class, declare it static";
+            }
+        }
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (final ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty()) {
+                return constructor.getModifiers().contains(Modifier.PRIVATE)
+                        ? "its no arguments constructor is private"
+                        : null;
+            }
+        }
+        return "it has no constructor without arguments";
+    }
+
+    private boolean resolveKind(final VariableElement field, final MappedField mappedField) {
+        final TypeMirror type = field.asType();
+        final TypeKind kind = type.getKind();
+        if (kind == TypeKind.INT) return mappedField.value("intValue");
+        if (kind == TypeKind.FLOAT) return mappedField.value("floatValue");
+        if (kind == TypeKind.BOOLEAN) return mappedField.value("booleanValue");
+        if (kind != TypeKind.DECLARED) {
+            return unsupported(field, type);
+        }
+        final DeclaredType declaredType = (DeclaredType) type;
+        final String name = qualifiedName(declaredType);
+        if (VALUE_CONVERTERS.containsKey(name)) {
+            return mappedField.value(VALUE_CONVERTERS.get(name));
+        }
+        if (name.equals(LINK)) {
+            final String target = linkTarget(declaredType);
+            return target == null ? unsupported(field, type) : mappedField.link(target);
+        }
+        if (name.equals(LIST) || LAZY_CONTAINERS.contains(name)) {
+            mappedField.lazy = !name.equals(LIST);
+            mappedField.stream = name.equals("java.util.stream.Stream");
+            if (declaredType.getTypeArguments().size() != 1
+                    || declaredType.getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+                return unsupported(field, type);
+            }
+            final DeclaredType itemType = (DeclaredType) declaredType.getTypeArguments().get(0);
+            final String itemName = qualifiedName(itemType);
+            if (VALUE_CONVERTERS.containsKey(itemName)) {
+                return mappedField.listOfValues(itemName, VALUE_CONVERTERS.get(itemName));
+            }
+            if (itemName.equals(LINK)) {
+                final String target = linkTarget(itemType);
+                return target == null ? unsupported(field, type) : mappedField.listOfLinks(target);
+            }
+            final TypeElement itemElement = (TypeElement) itemType.asElement();
+            if (!isNestable(itemElement) || !itemType.getTypeArguments().isEmpty()) {
+                return unsupported(field, type);
+            }
+            return mappedField.listOfNested(itemElement);
+        }
+        final TypeElement nested = (TypeElement) declaredType.asElement();
+        if (!isNestable(nested) || !declaredType.getTypeArguments().isEmpty()) {
+            return unsupported(field, type);
+        }
+        return mappedField.nested(nested);
+    }
+
+    private static boolean isNestable(final TypeElement type) {
+        final String name = type.getQualifiedName().toString();
+        return type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && !name.startsWith("java.")
+                && !name.startsWith("javax.");
+    }
+
+    private static String linkTarget(final DeclaredType linkType) {
+        if (linkType.getTypeArguments().size() != 1) return null;
+        final TypeMirror target = linkType.getTypeArguments().get(0);
+        if (target.getKind() != TypeKind.DECLARED || !((DeclaredType) target).getTypeArguments().isEmpty()) {
+            return null;
+        }
+        return qualifiedName((DeclaredType) target);
+    }
+
+    private static String qualifiedName(final DeclaredType type) {
+        return ((TypeElement) type.asElement()).getQualifiedName().toString();
+    }
+
+    private boolean unsupported(final VariableElement field, final TypeMirror type) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Webgrude can't map field " + field.getSimpleName() + " of type " + type + ". "
+                        + "The field type must be a class with Webgrude annotations, String, Integer, Float, "
+                        + "Boolean, Date, Element, Link<Page> or a List, LazyList, Iterable or Stream of these.", field);
+        return false;
+    }
+
+    private void note(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    static String mapperSimpleName(final TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement;
+             enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+        }
+        return name.append(MAPPER_SUFFIX).toString();
+    }
+
+    private String mapperQualifiedName(final TypeElement type) {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        return packageName.isEmpty() ? mapperSimpleName(type) : packageName + "." + mapperSimpleName(type);
+    }
+
+    private void writeMapper(final TypeElement type, final List<MappedField> fields, final List<String> afterPageLoad) {
+        final String mapperName = mapperQualifiedName(type);
+        if (!generatedMappers.add(mapperName)) return;
+        final String source = new MapperWriter(
+                processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString(),
+                mapperSimpleName(type),
+                type.getQualifiedName().toString(),
+                type.getAnnotation(XML.class) != null,
+                fields,
+                afterPageLoad,
+                this::mapperQualifiedName
+        ).write();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(mapperName, type).openWriter()) {
+            writer.write(source);
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write mapper " + mapperName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void writeServiceFile() {
+        if (generatedMappers.isEmpty()) return;
+        final Filer filer = processingEnv.getFiler();
+        final Messager messager = processingEnv.getMessager();
+        final Set<String> providers = new TreeSet<>(generatedMappers);
+        // Keep the mappers of classes not recompiled on an incremental build, unless their class
+        // is gone, a provider that can't be loaded would only be skipped at runtime
+        try {
+            final FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String provider = line.trim();
+                    if (!provider.isEmpty() && processingEnv.getElementUtils().getTypeElement(provider) != null) {
+                        providers.add(provider);
+                    }
+                }
+            }
+        } catch (final IOException | IllegalArgumentException ignored) {
+            // No previous service file
+        }
+        try {
+            final FileObject serviceFile = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = serviceFile.openWriter()) {
+                for (final String provider : providers) {
+                    writer.write(provider);
+                    writer.write('\n');
+                }
+            }
+        } catch (final IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+}
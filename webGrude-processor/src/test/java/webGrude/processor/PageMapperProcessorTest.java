@@ -0,0 +1,117 @@
+package webGrude.processor;
+
+import org.junit.jupiter.api.Test;
+import webGrude.Webgrude;
+import webGrude.mapping.PageMapper;
+import webGrude.processor.fixtures.Listing;
+import webGrude.processor.fixtures.ListingReader;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageMapperProcessorTest {
+
+    private final String listingContents = readTestResource("Listing.html");
+
+    @Test
+    public void testMapperIsGeneratedAndRegistered() {
+        final PageMapper<Listing> mapper = PageMapper.forType(Listing.class);
+
+        assertNotNull(mapper);
+        assertEquals("Listing_PageMapper", mapper.getClass().getSimpleName());
+        assertNotNull(PageMapper.forType(Listing.Row.class));
+    }
+
+    @Test
+    public void testGeneratedMapperMapsLikeReflection() {
+        final String url = "http://www.example.com/list";
+        // Debug mapping always goes through reflection
+        final Listing generated = new Webgrude().map(listingContents, Listing.class, url);
+        final Listing reflected = new Webgrude(true).map(listingContents, Listing.class, url);
+
+        final List<String> values = ListingReader.describe(generated);
+        assertEquals(ListingReader.describe(reflected), values);
+        assertEquals("Listing", values.get(0));
+        assertTrue(values.contains("1.5,2.25"));
+        assertEquals(2, ListingReader.afterLoad(generated));
+    }
+
+    @Test
+    public void testUnsupportedFieldTypeFailsCompilation() throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final Path output = Files.createTempDirectory("webgrude-processor");
+        final JavaFileObject source = new SimpleJavaFileObject(
+                URI.create("string:///sample/Prices.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return "package sample;\n"
+                        + "import webGrude.mapping.annotations.Selector;\n"
+                        + "public class Prices {\n"
+                        + "    @Selector(\".price\") double price;\n"
+                        + "}\n";
+            }
+        };
+
+        final boolean compiled = compiler.getTask(null, null, diagnostics,
+                List.of("-proc:only", "-processor", PageMapperProcessor.class.getName(),
+                        "-classpath", System.getProperty("java.class.path"), "-d", output.toString()),
+                null, List.of(source)).call();
+
+        assertFalse(compiled);
+        assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d ->
+                d.getKind() == Diagnostic.Kind.ERROR && d.getMessage(null).contains("price")));
+    }
+
+    @Test
+    public void testServiceFileDropsMappersThatNoLongerExist() throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final Path output = Files.createTempDirectory("webgrude-processor");
+        final List<String> options = List.of("-processor", PageMapperProcessor.class.getName(),
+                "-classpath", System.getProperty("java.class.path") + File.pathSeparator + output,
+                "-d", output.toString());
+
+        assertTrue(compiler.getTask(null, null, null, options, null, List.of(page("Kept"))).call());
+        final Path serviceFile = output.resolve("META-INF/services/webGrude.mapping.PageMapper");
+        // A mapper left by a page class that was deleted since the last build
+        Files.writeString(serviceFile, Files.readString(serviceFile) + "sample.Deleted_PageMapper\n");
+        assertTrue(compiler.getTask(null, null, null, options, null, List.of(page("Added"))).call());
+
+        assertEquals(List.of("sample.Added_PageMapper", "sample.Kept_PageMapper"), Files.readAllLines(serviceFile));
+    }
+
+    private static JavaFileObject page(final String name) {
+        return new SimpleJavaFileObject(URI.create("string:///sample/" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return "package sample;\n"
+                        + "import webGrude.mapping.annotations.Selector;\n"
+                        + "public class " + name + " {\n"
+                        + "    @Selector(\"h1\") public String title;\n"
+                        + "}\n";
+            }
+        };
+    }
+
+    private static String readTestResource(final String resourceName) {
+        try (InputStream in = PageMapperProcessorTest.class.getClassLoader().getResourceAsStream(resourceName)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package webGrude.processor.fixtures;
+
+import org.jsoup.nodes.Element;
+import webGrude.mapping.annotations.AfterPageLoad;
+import webGrude.mapping.annotations.Page;
+import webGrude.mapping.annotations.Selector;
+import webGrude.mapping.elements.Link;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Page
+public class Listing {
+
+    public static class Row {
+        @Selector(".name") String name;
+        @Selector(".price") float price;
+    }
+
+    public static class Header {
+        @Selector("h1") String title;
+        @Selector("span") Integer count;
+    }
+
+    @Selector("#header") Header header;
+    @Selector(".row") List<Row> rows;
+    @Selector(".row .name") List<String> names;
+    @Selector(".row") Iterable<Row> lazyRows;
+    @Selector(".row .price") Stream<Float> prices;
+    @Selector(value = "#total", format = "([0-9]*) items") int total;
+    @Selector("#open") boolean open;
+    @Selector(value = "#updated", attr = "title", format = "yyyy-MM-dd", locale = "en_US") Date updated;
+    @Selector("#footer") Element footer;
+    @Selector("#next") Link<Listing> next;
+    @Selector(".pages a") List<Link<Listing>> pages;
+
+    int afterLoad;
+
+    @AfterPageLoad
+    void countRows() {
+        afterLoad = rows.size();
+    }
+}
@@ -0,0 +1,39 @@
+package webGrude.processor.fixtures;
+
+import webGrude.mapping.elements.Link;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+public class ListingReader {
+
+    public static List<String> describe(final Listing listing) {
+        final List<String> values = new ArrayList<>();
+        values.add(listing.header.title);
+        values.add(String.valueOf(listing.header.count));
+        for (final Listing.Row row : listing.rows) {
+            values.add(row.name + "=" + row.price);
+        }
+        values.add(String.valueOf(listing.names));
+        for (final Listing.Row row : listing.lazyRows) {
+            values.add(row.name);
+        }
+        values.add(listing.prices.map(String::valueOf).collect(Collectors.joining(",")));
+        values.add(String.valueOf(listing.total));
+        values.add(String.valueOf(listing.open));
+        values.add(new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(listing.updated));
+        values.add(listing.footer.text());
+        values.add(listing.next.getLinkUrl());
+        for (final Link<Listing> page : listing.pages) {
+            values.add(page.getLinkUrl());
+        }
+        return values;
+    }
+
+    public static int afterLoad(final Listing listing) {
+        return listing.afterLoad;
+    }
+}